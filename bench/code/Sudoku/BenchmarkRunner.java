@@ -0,0 +1,22 @@
+package code.Sudoku;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark of this source set with the GC profiler, which reports
+ * allocation rates (gc.alloc.rate.norm is bytes per operation). An optional
+ * argument narrows the run down to the benchmarks matching a regular expression.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "code\\.Sudoku\\..*Benchmark";
+        new Runner(new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
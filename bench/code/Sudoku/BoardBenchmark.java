@@ -0,0 +1,85 @@
+package code.Sudoku;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the {@link Board} operations on the move and search paths.
+ * Squares and numbers are drawn from a fixed seed so every run does the same work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoardBenchmark {
+
+    private static final int MOVES = 1024;
+
+    @Param({"4", "9"})
+    public int size;
+
+    @Param({"easy", "hard", "pathological"})
+    public String difficulty;
+
+    private Board board;
+    private Board solved;
+    private int[] rows, cols, numbers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        board = Puzzles.load(Puzzles.get(size, difficulty));
+        solved = board.cloneBoard();
+        solved.solveSudoku();
+        Random random = new Random(42);
+        rows = new int[MOVES];
+        cols = new int[MOVES];
+        numbers = new int[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            do {
+                rows[i] = random.nextInt(size);
+                cols[i] = random.nextInt(size);
+            } while (!board.isMutable(rows[i], cols[i]));
+            numbers[i] = random.nextInt(size) + 1;
+        }
+    }
+
+    @Benchmark
+    public boolean ruleChecker() {
+        int i = next++ & (MOVES - 1);
+        return board.ruleChecker(rows[i], cols[i], numbers[i]);
+    }
+
+    @Benchmark
+    public void setAndDeleteElement(Blackhole hole) {
+        int i = next++ & (MOVES - 1);
+        board.setElement(rows[i], cols[i], numbers[i]);
+        hole.consume(board.isValid(rows[i], cols[i]));
+        board.deleteElement(rows[i], cols[i]);
+    }
+
+    @Benchmark
+    public Board cloneBoard() {
+        return board.cloneBoard();
+    }
+
+    @Benchmark
+    public boolean isSolved() {
+        return solved.isSolved();
+    }
+}
@@ -0,0 +1,54 @@
+package code.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a solve answered by the {@link SolutionCache}: the puzzle is
+ * solved once in the setup, so every operation is a lookup and a copy of
+ * the solution. No engine runs, so there is no engine parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class CachedSolveBenchmark {
+
+    @Param({"4", "9"})
+    public int size;
+
+    @Param({"easy", "hard", "pathological"})
+    public String difficulty;
+
+    private Board puzzle;
+
+    @Setup
+    public void setUp() {
+        puzzle = Puzzles.load(Puzzles.get(size, difficulty));
+        puzzle.setEngine(SolverEngine.PROPAGATION);
+        puzzle.cloneBoard().solveSudoku();
+    }
+
+    /**
+     * Board.solveSudoku on a puzzle that was solved before.
+     */
+    @Benchmark
+    public Board solveSudokuCached() {
+        Board board = puzzle.cloneBoard();
+        board.solveSudoku();
+        return board;
+    }
+}
@@ -0,0 +1,43 @@
+package code.Sudoku;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of generating puzzles. Generation draws the seeds 0, 1, 2, ...
+ * so every run generates the same sequence of puzzles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class GeneratorBenchmark {
+
+    @Param({"4", "9"})
+    public int size;
+
+    private long seed;
+
+    /**
+     * Generator.generate with the default number of clues of the size.
+     */
+    @Benchmark
+    public Board generateBoard() {
+        Board board = new Board(size);
+        new Generator(new Random(seed++)).generate(board, Generator.defaultClues(size));
+        return board;
+    }
+}
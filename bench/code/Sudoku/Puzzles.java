@@ -0,0 +1,70 @@
+package code.Sudoku;
+
+/**
+ * Fixed corpus of puzzles used by the benchmarks. Puzzles are written one
+ * row after another, with '.' for an empty square.
+ */
+final class Puzzles {
+
+    /** 4x4 with eight givens. */
+    static final String EASY_4 = "42..13....32..41";
+
+    /** 4x4 with the minimum of four givens and a unique solution. */
+    static final String HARD_4 = ".1...3....4...3.";
+
+    /** Empty 4x4 board; the first of its 288 solutions is searched for. */
+    static final String PATHOLOGICAL_4 = "................";
+
+    /** 9x9 solved by singles alone. */
+    static final String EASY_9 =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+
+    /** 9x9 with 17 givens that needs branching. */
+    static final String HARD_9 =
+            "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+
+    /** 9x9 built against cell-order backtracking: the first row has to be found last. */
+    static final String PATHOLOGICAL_9 =
+            "..............3.85..1.2.......5.7.....4...1...9.......5......73..2.1........4...9";
+
+    private Puzzles() {
+    }
+
+    /**
+     * Returns the puzzle of the given size and difficulty.
+     *
+     * @param size 4 or 9.
+     * @param difficulty "easy", "hard" or "pathological".
+     * @return The puzzle as a string.
+     */
+    static String get(int size, String difficulty) {
+        switch (difficulty) {
+            case "easy":
+                return size == 4 ? EASY_4 : EASY_9;
+            case "hard":
+                return size == 4 ? HARD_4 : HARD_9;
+            case "pathological":
+                return size == 4 ? PATHOLOGICAL_4 : PATHOLOGICAL_9;
+            default:
+                throw new IllegalArgumentException(difficulty);
+        }
+    }
+
+    /**
+     * Create a board holding the given puzzle as given numbers.
+     *
+     * @param puzzle The puzzle as a string.
+     * @return A new board.
+     */
+    static Board load(String puzzle) {
+        int size = (int) Math.sqrt(puzzle.length());
+        Board board = new Board(size);
+        for (int i = 0; i < puzzle.length(); i++) {
+            char c = puzzle.charAt(i);
+            if (c != '.') {
+                board.setGiven(i / size, i % size, c - '0');
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,56 @@
+package code.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of solving puzzles. Every solve works on a fresh clone of the
+ * puzzle, so the cost of cloneBoard (see {@link BoardBenchmark}) is
+ * included. Solves bypass the {@link SolutionCache}; a repeated query
+ * answered by it is measured by {@link CachedSolveBenchmark}, and
+ * generation by {@link GeneratorBenchmark}. Cell-order backtracking on the
+ * pathological 9x9 puzzle takes seconds per operation by design.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SolverBenchmark {
+
+    @Param({"4", "9"})
+    public int size;
+
+    @Param({"easy", "hard", "pathological"})
+    public String difficulty;
+
+    @Param({"BACKTRACKING", "DANCING_LINKS", "PROPAGATION", "PARALLEL"})
+    public String engine;
+
+    private Board puzzle;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        puzzle = Puzzles.load(Puzzles.get(size, difficulty));
+        puzzle.setEngine((SolverEngine) SolverEngine.class.getField(engine).get(null));
+    }
+
+    @Benchmark
+    public Board solveSudoku() {
+        Board board = puzzle.cloneBoard();
+        board.getEngine().solve(board);
+        return board;
+    }
+}
@@ -7,6 +7,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -236,6 +237,10 @@ public class NetworkAdapter {
     }
 
     private static final int[] EMPTY_INT_ARRAY = new int[0];
+
+    /** Bits of a packed square holding its number, and the flag marking a given number. */
+    private static final int SQUARE_VALUE = 0x1F;
+    private static final int SQUARE_GIVEN = 0x20;
     
     /** To be notified when a message is received. */
     private MessageListener listener;
@@ -522,6 +527,25 @@ public class NetworkAdapter {
         writeMsg(builder.toString());
     }
     
+    /**
+     * Write an "accepted" join_ack message asynchronously from packed squares,
+     * e.g. a record of a puzzle library, without copying them into an array first.
+     *
+     * @param size Size of the board
+     * @param cells One byte per square in row-major order, starting at the buffer's
+     *   position: the low five bits hold the number (0 for an empty square) and
+     *   bit 0x20 is set for a given number. The buffer's position is not changed.
+     *
+     * @see #writeJoinAck(int, int...)
+     */
+    public void writeJoinAck(int size, ByteBuffer cells) {
+        StringBuilder builder = new StringBuilder(MessageType.JOIN_ACK.header);
+        builder.append("1,");
+        builder.append(size);
+        appendSquares(builder, size, cells);
+        writeMsg(builder.toString());
+    }
+
     /**
      * Write a new game message asynchronously.
      * 
@@ -543,6 +567,36 @@ public class NetworkAdapter {
         writeMsg(builder.toString());    	
     }
     
+    /**
+     * Write a new game message asynchronously from packed squares.
+     *
+     * @param size Size of the board
+     * @param cells One byte per square in row-major order, as for
+     *   {@link #writeJoinAck(int, ByteBuffer)}. The buffer's position is not changed.
+     *
+     * @see #writeNew(int, int...)
+     */
+    public void writeNew(int size, ByteBuffer cells) {
+        StringBuilder builder = new StringBuilder(MessageType.NEW.header);
+        builder.append(size);
+        appendSquares(builder, size, cells);
+        writeMsg(builder.toString());
+    }
+
+    /** Append the non-empty packed squares as (x, y, v, f) tuples. */
+    private void appendSquares(StringBuilder builder, int size, ByteBuffer cells) {
+        int start = cells.position();
+        for (int i = 0; i < size * size; i++) {
+            int square = cells.get(start + i);
+            if ((square & SQUARE_VALUE) != 0) {
+                builder.append(',').append(i % size);
+                builder.append(',').append(i / size);
+                builder.append(',').append(square & SQUARE_VALUE);
+                builder.append(',').append(toInt((square & SQUARE_GIVEN) != 0));
+            }
+        }
+    }
+
     /**
      * Write an new_ack message asynchronously. 
      * 
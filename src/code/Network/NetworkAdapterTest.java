@@ -9,6 +9,7 @@ import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import org.junit.After;
 import org.junit.Before;
@@ -90,6 +91,23 @@ public class NetworkAdapterTest {
         checkMessageDelivery("new:9,0,0,2,1,1,1,3,0");
     }
     
+    @Test
+    public void testWriteJoinAckPacked() {
+        ByteBuffer cells = ByteBuffer.wrap(new byte[] {0, 0x22, 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0x24});
+        network.writeJoinAck(4, cells);
+        checkMessageDelivery("join_ack:1,4,1,0,2,1,2,1,3,0,3,3,4,1"); // size,x,y,v,f,...
+        assertEquals(0, cells.position());
+    }
+
+    @Test
+    public void testWriteNewPacked() {
+        ByteBuffer cells = ByteBuffer.allocate(20);
+        cells.position(4);
+        cells.put(4, (byte) 0x21);
+        network.writeNew(4, cells.slice());
+        checkMessageDelivery("new:4,0,0,1,1"); // size,x,y,v,f
+    }
+
     @Test
     public void testWriteNewAck1() {
         network.writeNewAck(true);
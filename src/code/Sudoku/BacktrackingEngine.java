@@ -0,0 +1,80 @@
+package code.Sudoku;
+
+/**
+ * Solves a board by trying every allowed number in the first empty square
+ * and backtracking when a square runs out of numbers. The search runs on a
+ * {@link SearchCore}, so each number is checked once, through the masks of
+ * the square's units, and the board is only written when it is solved.
+ */
+class BacktrackingEngine implements SolverEngine {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean solve(Board board, SearchContext context) {
+        SearchCore core = new SearchCore(board);
+        if (!solve(core, 0, context)) {
+            return false;
+        }
+        core.apply(board);
+        return true;
+    }
+
+    /**
+     * Fill the empty squares from the given one on.
+     *
+     * @return Returns whether a solution was found; if not, the core is left as it was.
+     */
+    private boolean solve(SearchCore core, int from, SearchContext context) {
+        context.checkpoint();
+        int cell = core.nextEmpty(from);
+        if (cell < 0) {
+            return true;
+        }
+        int mark = core.mark();
+        for (int mask = core.candidates(cell); mask != 0; mask &= mask - 1) {
+            context.ruleCheck();
+            core.place(cell, Integer.numberOfTrailingZeros(mask));
+            if (solve(core, cell + 1, context)) {
+                return true;
+            }
+            core.undo(mark);
+            context.backtrack();
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countSolutions(Board board, int limit, SearchContext context) {
+        return count(new SearchCore(board), 0, limit, context);
+    }
+
+    /**
+     * Count the completions of the core by trying every number in the first empty square.
+     *
+     * @return Returns the number of solutions found, at most limit.
+     */
+    private int count(SearchCore core, int from, int limit, SearchContext context) {
+        context.checkpoint();
+        int cell = core.nextEmpty(from);
+        if (cell < 0) {
+            return 1;
+        }
+        int mark = core.mark(), found = 0;
+        for (int mask = core.candidates(cell); mask != 0 && found < limit; mask &= mask - 1) {
+            context.ruleCheck();
+            core.place(cell, Integer.numberOfTrailingZeros(mask));
+            int below = count(core, cell + 1, limit - found, context);
+            core.undo(mark);
+            if (below == 0) {
+                context.backtrack();
+            }
+            found += below;
+        }
+        return found;
+    }
+}
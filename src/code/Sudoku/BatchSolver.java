@@ -0,0 +1,343 @@
+package code.Sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command-line solver for puzzle files, without the Swing dialog.
+ * The input has one puzzle per line: 16 or 81 characters, digits for
+ * givens and '0' or '.' for empty squares. The file is read through
+ * memory-mapped chunks that are solved in parallel, and the output gets
+ * one line per puzzle in input order: the solved grid, or "unsolvable",
+ * "timeout" or "invalid". Throughput and latency percentiles are
+ * reported on standard error when the run ends.
+ *
+ * <pre>
+ *  java code.Sudoku.BatchSolver puzzles.txt solutions.txt [threads]
+ * </pre>
+ */
+public class BatchSolver {
+
+    /** Bytes of input mapped and solved per task; chunks end at a line break. */
+    private static final int CHUNK_BYTES = 1 << 22;
+
+    /** Search nodes allowed per puzzle before it is reported as a timeout. */
+    private static final long MAX_NODES = 1000000;
+
+    private final SolverEngine engine;
+    private final int chunkBytes;
+    private final long maxNodes;
+
+    /**
+     * Create a batch solver.
+     *
+     * @param engine The engine used for every puzzle.
+     */
+    BatchSolver(SolverEngine engine) {
+        this(engine, CHUNK_BYTES, MAX_NODES);
+    }
+
+    /**
+     * Create a batch solver with the given chunk size and search budget.
+     *
+     * @param engine The engine used for every puzzle.
+     * @param chunkBytes Bytes of input solved per task; no line may be longer.
+     * @param maxNodes Search nodes allowed per puzzle before it is reported as a timeout.
+     */
+    BatchSolver(SolverEngine engine, int chunkBytes, long maxNodes) {
+        this.engine = engine;
+        this.chunkBytes = chunkBytes;
+        this.maxNodes = maxNodes;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: BatchSolver <input> <output> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Stats stats = new BatchSolver(SolverEngine.PROPAGATION).run(args[0], args[1], threads);
+        System.err.println(stats);
+    }
+
+    /**
+     * Solve every puzzle of the input file and write the solutions in order.
+     *
+     * @param input Path of the puzzle file.
+     * @param output Path of the solution file; it is overwritten.
+     * @param threads Number of chunks solved in parallel.
+     * @return Returns the throughput and latency of the run.
+     */
+    Stats run(String input, String output, int threads) throws IOException, InterruptedException {
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        Stats stats = new Stats();
+        long start = System.nanoTime();
+        try (FileChannel in = FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(Paths.get(output), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0, length = in.size();
+            while (position < length) {
+                MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(chunkBytes, length - position));
+                int end = buffer.limit();
+                if (position + end < length) {
+                    /*give the partial last line to the next chunk*/
+                    while (end > 0 && buffer.get(end - 1) != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        throw new IOException("line longer than " + chunkBytes + " bytes at " + position);
+                    }
+                }
+                buffer.limit(end);
+                pending.add(service.submit(() -> solve(buffer)));
+                position += end;
+                /*keep a bounded number of chunks in memory*/
+                while (pending.size() > 2 * threads) {
+                    write(pending.poll(), out, stats);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out, stats);
+            }
+        } finally {
+            service.shutdownNow();
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    /**
+     * Wait for a chunk and append its solutions to the output.
+     */
+    private void write(Future<Chunk> future, FileChannel out, Stats stats) throws IOException, InterruptedException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(chunk.output, 0, chunk.outputLength);
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        stats.add(chunk);
+    }
+
+    /**
+     * Solve every line of a mapped chunk.
+     */
+    private Chunk solve(ByteBuffer buffer) {
+        Chunk chunk = new Chunk();
+        byte[] line = new byte[1024];
+        int length = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                solveLine(line, length, chunk);
+                length = 0;
+            } else if (b != '\r' && length < line.length) {
+                line[length++] = b;
+            }
+        }
+        solveLine(line, length, chunk);
+        return chunk;
+    }
+
+    /**
+     * Solve one puzzle and append its result line to the chunk.
+     */
+    private void solveLine(byte[] line, int length, Chunk chunk) {
+        if (length == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        int size = (int) Math.sqrt(length);
+        Board board = null;
+        if ((size == 4 || size == 9) && size * size == length) {
+            board = new Board(size);
+            board.setEngine(engine);
+            for (int i = 0; i < length && board != null; i++) {
+                int c = line[i];
+                if (c >= '1' && c <= '0' + size) {
+                    board.setGiven(i / size, i % size, c - '0');
+                } else if (c != '0' && c != '.') {
+                    board = null;
+                }
+            }
+        }
+        if (board == null) {
+            chunk.append("invalid");
+            chunk.invalid++;
+        } else {
+            try {
+                if (engine.solve(board, new SearchContext(maxNodes, 0))) {
+                    chunk.append(board);
+                    chunk.solved++;
+                } else {
+                    chunk.append("unsolvable");
+                    chunk.unsolvable++;
+                }
+            } catch (CancellationException e) {
+                chunk.append("timeout");
+                chunk.timedOut++;
+            }
+        }
+        chunk.latency(System.nanoTime() - start);
+    }
+
+    /**
+     * Results of one chunk: the output lines and per-puzzle latencies.
+     */
+    private static class Chunk {
+
+        private byte[] output = new byte[4096];
+        private int outputLength;
+        private long[] latencies = new long[256];
+        private int puzzles;
+        private int solved, unsolvable, timedOut, invalid;
+
+        void append(String text) {
+            ensure(text.length() + 1);
+            for (int i = 0; i < text.length(); i++) {
+                output[outputLength++] = (byte) text.charAt(i);
+            }
+            output[outputLength++] = '\n';
+        }
+
+        void append(Board board) {
+            int size = board.size();
+            ensure(size * size + 1);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    output[outputLength++] = (byte) ('0' + board.getElement(i, j));
+                }
+            }
+            output[outputLength++] = '\n';
+        }
+
+        void latency(long nanos) {
+            if (puzzles == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * puzzles);
+            }
+            latencies[puzzles++] = nanos;
+        }
+
+        private void ensure(int more) {
+            if (outputLength + more > output.length) {
+                output = Arrays.copyOf(output, Math.max(2 * output.length, outputLength + more));
+            }
+        }
+    }
+
+    /**
+     * Totals of a run.
+     */
+    static class Stats {
+
+        private long[] latencies = new long[0];
+        private boolean sorted;
+        private int puzzles;
+        private int solved, unsolvable, timedOut, invalid;
+        private long elapsedNanos;
+
+        private void add(Chunk chunk) {
+            sorted = false;
+            if (puzzles + chunk.puzzles > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(2 * latencies.length, puzzles + chunk.puzzles));
+            }
+            System.arraycopy(chunk.latencies, 0, latencies, puzzles, chunk.puzzles);
+            puzzles += chunk.puzzles;
+            solved += chunk.solved;
+            unsolvable += chunk.unsolvable;
+            timedOut += chunk.timedOut;
+            invalid += chunk.invalid;
+        }
+
+        /**
+         * Returns the number of puzzles read.
+         *
+         * @return The number of non-empty input lines.
+         */
+        int puzzles() {
+            return puzzles;
+        }
+
+        /**
+         * Returns the number of puzzles that were solved.
+         *
+         * @return The number of solved puzzles.
+         */
+        int solved() {
+            return solved;
+        }
+
+        /**
+         * Returns the number of puzzles without a solution.
+         *
+         * @return The number of unsolvable puzzles.
+         */
+        int unsolvable() {
+            return unsolvable;
+        }
+
+        /**
+         * Returns the number of puzzles that ran out of search budget.
+         *
+         * @return The number of timeouts.
+         */
+        int timedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Returns the number of lines that are not a puzzle.
+         *
+         * @return The number of invalid lines.
+         */
+        int invalid() {
+            return invalid;
+        }
+
+        /**
+         * Returns the latency below which the given fraction of the puzzles were solved.
+         *
+         * @param fraction A fraction between 0 and 1, e.g. 0.99.
+         * @return The latency in nanoseconds.
+         */
+        long percentile(double fraction) {
+            if (puzzles == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(latencies, 0, puzzles);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(fraction * puzzles) - 1;
+            return latencies[Math.max(0, Math.min(puzzles - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%d puzzles (%d solved, %d unsolvable, %d timeout, %d invalid) in %.3f s, %.0f puzzles/s%n"
+                            + "latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+                    puzzles, solved, unsolvable, timedOut, invalid, seconds, puzzles / Math.max(seconds, 1e-9),
+                    percentile(0.5) / 1e3, percentile(0.9) / 1e3, percentile(0.99) / 1e3,
+                    percentile(0.999) / 1e3, percentile(1.0) / 1e3);
+        }
+    }
+}
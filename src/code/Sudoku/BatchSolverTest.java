@@ -0,0 +1,94 @@
+package code.Sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link BatchSolver} class by solving a temporary puzzle file
+ * split into many small chunks.
+ */
+public class BatchSolverTest {
+
+    private static final String EASY =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    /** Takes backtracking far more than the budget of the test. */
+    private static final String HARD =
+            "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+    /** No number fits the last square of the first row. */
+    private static final String UNSOLVABLE =
+            "12345678.........9...............................................................";
+
+    private File input, output;
+
+    @Before
+    public void setUp() throws IOException {
+        input = File.createTempFile("puzzles", ".txt");
+        output = File.createTempFile("solutions", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Test
+    public void testRun() throws IOException, InterruptedException {
+        Board board = new Board(9);
+        for (int i = 0; i < 81; i++) {
+            if (EASY.charAt(i) != '.') {
+                board.setGiven(i / 9, i % 9, EASY.charAt(i) - '0');
+            }
+        }
+        assertTrue(SolverEngine.PROPAGATION.solve(board));
+        StringBuilder solved = new StringBuilder();
+        for (int i = 0; i < 81; i++) {
+            solved.append(board.getElement(i / 9, i % 9));
+        }
+        String[] lines = {EASY, "not a puzzle", UNSOLVABLE, HARD, EASY.replace('.', '0'), "1234567"};
+        String[] expected = {solved.toString(), "invalid", "unsolvable", "timeout", solved.toString(), "invalid"};
+        StringBuilder text = new StringBuilder();
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            /*every other line ends in CRLF, and empty lines are skipped*/
+            text.append(lines[i % lines.length]).append(i % 2 == 0 ? "\r\n" : "\n");
+            if (i % 7 == 0) {
+                text.append("\n");
+            }
+            results.add(expected[i % lines.length]);
+        }
+        Files.write(input.toPath(), text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        /*chunks of at most two lines, solved by four threads*/
+        BatchSolver solver = new BatchSolver(SolverEngine.BACKTRACKING, 2 * (81 + 2), 20000);
+        BatchSolver.Stats stats = solver.run(input.getPath(), output.getPath(), 4);
+        assertEquals(results, Files.readAllLines(output.toPath(), StandardCharsets.US_ASCII));
+        assertEquals(30, stats.puzzles());
+        assertEquals(10, stats.solved());
+        assertEquals(5, stats.unsolvable());
+        assertEquals(5, stats.timedOut());
+        assertEquals(10, stats.invalid());
+        assertTrue(stats.percentile(0.5) <= stats.percentile(1.0));
+    }
+
+    @Test
+    public void testLineLongerThanChunk() throws IOException, InterruptedException {
+        Files.write(input.toPath(), (EASY + "\n" + EASY + "\n").getBytes(StandardCharsets.US_ASCII));
+        try {
+            new BatchSolver(SolverEngine.PROPAGATION, 40, 20000).run(input.getPath(), output.getPath(), 1);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("line longer than 40 bytes"));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package code.Sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Checks many completed boards at once, e.g. solutions submitted by
+ * players. The boards are read in the packed format of
+ * {@link Board#pack(ByteBuffer)}, one after the other, without building a
+ * Board for each of them.
+ * <p>
+ * A board is solved if every row, column and sub-grid holds every number
+ * once. This is first decided for all the boards with one bitmask per unit;
+ * only the boards that fail are scanned again to find their conflicting
+ * squares. {@link #create()} returns a validator that decides many boards
+ * at a time in vector lanes when the Vector API is available, and this
+ * scalar one when it is not.
+ * <p>
+ * The unit tables of the last board size are cached, so a validator is
+ * cheap to reuse but must not be shared between threads.
+ */
+class BatchValidator {
+
+    private static final int VALUE = 0x1F;
+
+    /**
+     * Outcome of checking one board.
+     */
+    static class Report {
+
+        private static final int[] NONE = new int[0];
+
+        private final int[] conflicts;
+
+        Report(int[] conflicts) {
+            this.conflicts = conflicts;
+        }
+
+        /**
+         * Returns whether the board is completely and correctly filled.
+         *
+         * @return Whether there is no conflicting square.
+         */
+        boolean solved() {
+            return conflicts.length == 0;
+        }
+
+        /**
+         * Returns the squares that are empty, hold a number out of range, or
+         * share their number with another square of a row, column or sub-grid.
+         *
+         * @return Returns the squares as row * size + col, in increasing order.
+         */
+        int[] conflicts() {
+            return conflicts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return solved() ? "solved" : "conflicts at " + Arrays.toString(conflicts);
+        }
+    }
+
+    private static final Report SOLVED = new Report(Report.NONE);
+
+    int size;
+    /** The row, column and sub-grid of every square, as unit indices. */
+    int[] rowOf, colOf, boxOf;
+
+    /**
+     * Returns the fastest validator this JVM supports.
+     *
+     * @return A validator using the Vector API if its module is present, else a scalar one.
+     */
+    static BatchValidator create() {
+        try {
+            Class.forName("jdk.incubator.vector.IntVector");
+            return (BatchValidator) Class.forName("code.Sudoku.VectorBatchValidator")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new BatchValidator();
+        }
+    }
+
+    /**
+     * Check the given number of packed boards.
+     *
+     * @param size The size of every board.
+     * @param boards The boards, size * size bytes each, from the position of the buffer,
+     *               which is not changed.
+     * @param count The number of boards.
+     * @return Returns a report for every board, in order.
+     */
+    Report[] validate(int size, ByteBuffer boards, int count) {
+        if (size != this.size) {
+            layout(size);
+        }
+        if (boards.remaining() < count * size * size) {
+            throw new IllegalArgumentException(count + " boards of size " + size + " need "
+                    + count * size * size + " bytes, got " + boards.remaining());
+        }
+        boolean[] solved = new boolean[count];
+        findSolved(boards, count, solved);
+        Report[] reports = new Report[count];
+        for (int i = 0; i < count; i++) {
+            reports[i] = solved[i] ? SOLVED : new Report(conflicts(boards, boards.position() + i * size * size));
+        }
+        return reports;
+    }
+
+    /**
+     * Mark the boards that are solved. Boards left unmarked are scanned for their conflicts.
+     *
+     * @param boards The packed boards, from the position of the buffer.
+     * @param count The number of boards.
+     * @param solved Set to true for every solved board.
+     */
+    void findSolved(ByteBuffer boards, int count, boolean[] solved) {
+        int cells = size * size;
+        for (int i = 0; i < count; i++) {
+            solved[i] = isSolved(boards, boards.position() + i * cells);
+        }
+    }
+
+    /**
+     * Returns whether the board at the given offset holds every number once in every unit.
+     */
+    boolean isSolved(ByteBuffer boards, int offset) {
+        int full = ((1 << size) - 1) << 1;
+        int[] seen = new int[3 * size];
+        for (int cell = 0; cell < size * size; cell++) {
+            int bit = 1 << (boards.get(offset + cell) & VALUE);
+            if (((seen[rowOf[cell]] | seen[colOf[cell]] | seen[boxOf[cell]]) & bit) != 0) {
+                return false;
+            }
+            seen[rowOf[cell]] |= bit;
+            seen[colOf[cell]] |= bit;
+            seen[boxOf[cell]] |= bit;
+        }
+        for (int mask : seen) {
+            if (mask != full) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the conflicting squares of the board at the given offset.
+     */
+    private int[] conflicts(ByteBuffer boards, int offset) {
+        int cells = size * size;
+        /*squares holding each number in each unit, counted up to 2*/
+        int[] once = new int[3 * size], twice = new int[3 * size];
+        int[] values = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int num = boards.get(offset + cell) & VALUE;
+            values[cell] = num;
+            if (num >= 1 && num <= size) {
+                int bit = 1 << num;
+                twice[rowOf[cell]] |= once[rowOf[cell]] & bit;
+                once[rowOf[cell]] |= bit;
+                twice[colOf[cell]] |= once[colOf[cell]] & bit;
+                once[colOf[cell]] |= bit;
+                twice[boxOf[cell]] |= once[boxOf[cell]] & bit;
+                once[boxOf[cell]] |= bit;
+            }
+        }
+        int[] conflicts = new int[cells];
+        int found = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int num = values[cell];
+            int bit = 1 << num;
+            if (num < 1 || num > size
+                    || ((twice[rowOf[cell]] | twice[colOf[cell]] | twice[boxOf[cell]]) & bit) != 0) {
+                conflicts[found++] = cell;
+            }
+        }
+        return Arrays.copyOf(conflicts, found);
+    }
+
+    /**
+     * Build the unit tables of a board size.
+     */
+    void layout(int size) {
+        Geometry geometry = Geometry.of(size);
+        this.size = size;
+        rowOf = new int[size * size];
+        colOf = new int[size * size];
+        boxOf = new int[size * size];
+        for (int cell = 0; cell < size * size; cell++) {
+            int[] units = geometry.unitsOf(cell);
+            rowOf[cell] = units[0];
+            colOf[cell] = units[1];
+            boxOf[cell] = units[2];
+        }
+    }
+}
@@ -1,21 +1,76 @@
 package code.Sudoku;
 
-import java.util.Random;
-import java.util.concurrent.*;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
 
 /**
  * An abstraction of the Sudoku puzzle.
  */
 class  Board implements Cloneable{
 
+    /**
+     * Bits of a square holding its number, and its given and valid flags.
+     * A number is valid while it is the only copy in its row, column and sub-grid.
+     */
+    private static final int VALUE = 0x1F;
+    private static final int GIVEN = 0x20;
+    private static final int VALID = 0x40;
+
     /**
      * Size of this board (number of columns/rows).
      */
     private int size;
+    /**
+     * Lookup tables of the sub-grids and units of the size.
+     */
+    private Geometry geometry;
     private boolean wasSolved;
-    private int[][] board;
-    private boolean[][] valid;
-    private boolean[][] mutable;
+    /**
+     * Squares in row-major order. The low bits hold the number,
+     * the flag bits mark given numbers and valid insertions.
+     */
+    private byte[] cells;
+    /**
+     * Rules of the puzzle; the classic ones of the size unless a variant is set.
+     */
+    private ConstraintSet constraints;
+    /**
+     * Occupancy bitmasks of the units of the constraints: the rows, then the
+     * columns, then the sub-grids, then those of the variant; bit n is set
+     * when the number n appears in the unit.
+     */
+    private int[] masks;
+    /**
+     * Number of copies of each number in every unit, indexed by
+     * unit * (size + 1) + num with the units ordered as in masks.
+     */
+    private byte[] counts;
+    /**
+     * Number of squares holding a number, and how many of those are valid.
+     */
+    private int filled, valid;
+    /**
+     * Sum and number of the numbers in every cage, for killer puzzles.
+     */
+    private int[] cageTotals, cageFilled;
+    /**
+     * Zobrist hash of the numbers on the board: the xor of the key of every
+     * square and number, kept up to date by every change.
+     */
+    private long hash;
+    /**
+     * Zobrist keys by board size, indexed by square * size + num - 1; built on first use.
+     */
+    private static final long[][] ZOBRIST = new long[VALUE + 1][];
+    private long[] zobrist;
+    /**
+     * Engine used by solveSudoku and isSolvable, or null for the default of the board size.
+     */
+    private SolverEngine engine;
+    /**
+     * Metrics of the last solver call on this board, or null before the first one.
+     */
+    private volatile SolverMetrics metrics;
 
     /**
      * Create a new board of the given size.
@@ -23,17 +78,23 @@ class  Board implements Cloneable{
      * @param size This will be the size of the board.
      */
     Board(int size) {
-        this.size = size;
-        this.board = new int[size][size];
-        this.valid = new boolean[size][size];
-        this.mutable = new boolean[size][size];
+        reset(size);
     }
 
-    private Board(int size, int[][] board, boolean[][] valid, boolean[][] mutable) {
-        this.size = size;
-        this.board = arrayClone(board);
-        this.valid = arrayClone(valid);
-        this.mutable = arrayClone(mutable);
+    private Board(Board original) {
+        this.size = original.size;
+        this.geometry = original.geometry;
+        this.cells = original.cells.clone();
+        this.constraints = original.constraints;
+        this.masks = original.masks.clone();
+        this.counts = original.counts.clone();
+        this.cageTotals = original.cageTotals.clone();
+        this.cageFilled = original.cageFilled.clone();
+        this.filled = original.filled;
+        this.valid = original.valid;
+        this.hash = original.hash;
+        this.zobrist = original.zobrist;
+        this.engine = original.engine;
         this.wasSolved = false;
     }
 
@@ -43,38 +104,139 @@ class  Board implements Cloneable{
      * @return Returns a copy of a board object.
      */
     Board cloneBoard(){
-        return new Board(size,this.board,this.valid,this.mutable);
+        return new Board(this);
 
     }
 
     /**
-     * Implementation of clone class.
-     * */
-    protected Board clone() throws CloneNotSupportedException {
-        return (Board) super.clone();
+     * Returns a hash of the numbers on the board, updated in constant time by
+     * every change. Boards with the same numbers have the same hash, whichever
+     * of them are given.
+     *
+     * @return Returns the Zobrist hash of the board.
+     */
+    long hash() {
+        return hash;
+    }
 
+    /**
+     * Returns the numbers on the board.
+     *
+     * @return Returns size * size numbers in row-major order, 0 for empty squares.
+     */
+    byte[] numbers() {
+        byte[] numbers = new byte[cells.length];
+        for (int cell = 0; cell < cells.length; cell++) {
+            numbers[cell] = (byte) (cells[cell] & VALUE);
+        }
+        return numbers;
     }
 
     /**
-     * Resolution to array clone.
-     * */
-    private int[][] arrayClone(int[][] original) {
-        int [][] clone = new int[original.length][original.length];
-        for (int i = 0; i < original.length; i++) {
-            System.arraycopy(original[i], 0, clone[i], 0, original.length);
+     * Returns whether the board holds exactly the given numbers.
+     *
+     * @param numbers Numbers in row-major order, as returned by {@link #numbers()}.
+     * @return True if every square holds the number at its index.
+     */
+    boolean hasNumbers(byte[] numbers) {
+        if (numbers.length != cells.length) {
+            return false;
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            if ((cells[cell] & VALUE) != numbers[cell]) {
+                return false;
+            }
         }
-        return clone;
+        return true;
     }
 
     /**
-     * Resolution to array clone.
-     * */
-    private boolean[][] arrayClone(boolean[][] original) {
-        boolean [][] clone = new boolean[original.length][original.length];
-        for (int i = 0; i < original.length; i++) {
-            System.arraycopy(original[i], 0, clone[i], 0, original.length);
+     * Returns the Zobrist keys of a board size, with a fixed seed so that
+     * hashes are the same in every run.
+     */
+    private static long[] zobrist(int size) {
+        synchronized (ZOBRIST) {
+            if (ZOBRIST[size] == null) {
+                SplittableRandom random = new SplittableRandom(size);
+                long[] keys = new long[size * size * size];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = random.nextLong();
+                }
+                ZOBRIST[size] = keys;
+            }
+            return ZOBRIST[size];
         }
-        return clone;
+    }
+
+    /**
+     * Creates a board from packed squares, as written by {@link #pack(ByteBuffer)}.
+     *
+     * @param size The size of the board.
+     * @param in One byte per square in row-major order, read from the buffer's position on.
+     * @return Returns the new board.
+     */
+    static Board unpack(int size, ByteBuffer in) {
+        Board board = new Board(size);
+        for (int cell = 0; cell < size * size; cell++) {
+            int square = in.get();
+            if ((square & VALUE) != 0) {
+                if ((square & GIVEN) != 0) {
+                    board.setGiven(cell / size, cell % size, square & VALUE);
+                } else {
+                    board.setElement(cell / size, cell % size, square & VALUE);
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Creates a board from squares as sent over the network: a tuple of
+     * (x, y, v, f) per non-empty square, where x and y are 0-based column and
+     * row indexes, v is the number and f is 1 for a given number, else 0.
+     *
+     * @param size The size of the board.
+     * @param squares The tuples, one after the other.
+     * @return Returns the new board.
+     * @throws IllegalArgumentException If a tuple is incomplete or out of range.
+     */
+    static Board fromSquares(int size, int[] squares) {
+        if (squares.length % 4 != 0) {
+            throw new IllegalArgumentException("incomplete square: " + squares.length + " numbers");
+        }
+        Board board = new Board(size);
+        for (int i = 0; i < squares.length; i += 4) {
+            int x = squares[i], y = squares[i + 1], v = squares[i + 2];
+            if (x < 0 || x >= size || y < 0 || y >= size || v < 1 || v > size) {
+                throw new IllegalArgumentException(String.format("bad square (%d, %d, %d)", x, y, v));
+            }
+            if (squares[i + 3] == 1) {
+                board.setGiven(y, x, v);
+            } else {
+                board.setElement(y, x, v);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Writes one byte per square in row-major order: the low five bits hold the
+     * number, 0 for an empty square, and bit 0x20 is set for a given number.
+     *
+     * @param out The buffer written from its position on.
+     */
+    void pack(ByteBuffer out) {
+        for (byte cell : cells) {
+            out.put((byte) (cell & (VALUE | GIVEN)));
+        }
+    }
+
+    /**
+     * Implementation of clone class.
+     * */
+    protected Board clone() throws CloneNotSupportedException {
+        return (Board) super.clone();
+
     }
 
     /**
@@ -87,12 +249,30 @@ class  Board implements Cloneable{
     }
 
     /**
-     * Method that creates a solvable board by backtracking.
+     * Return the size of a sub-grid of this board.
+     *
+     * @return Returns the number of rows/columns of a sub-grid.
+     */
+    int boxSize() {
+        return geometry.boxSize();
+    }
+
+    /**
+     * Method that fills this board with a new puzzle that has exactly one solution.
      * */
     void generateBoard() {
         new Solver(this).generateBoard();
     }
 
+    /**
+     * Method that fills this board with a new puzzle of the given difficulty.
+     *
+     * @param difficulty The hardest technique level the puzzle should need.
+     * */
+    void generateBoard(Difficulty difficulty) {
+        new Solver(this).generateBoard(difficulty);
+    }
+
     /**
      * Backtracking method that determines if a configuration is solvable.
      * */
@@ -100,6 +280,29 @@ class  Board implements Cloneable{
         return new Solver(this).isSolvable();
     }
 
+    /**
+     * Solves this board on the calling thread within a node and time budget.
+     * The board is only changed if a solution is found.
+     *
+     * @param maxNodes The number of search nodes after which the search stops.
+     * @param timeoutMillis The time after which the search stops, or 0 for no limit.
+     * @return Whether the board was solved, found unsolvable or ran out of budget.
+     */
+    Solver.Result solveWithin(long maxNodes, long timeoutMillis) {
+        return new Solver(this).solve(maxNodes, timeoutMillis);
+    }
+
+    /**
+     * Counts the solutions of this board, giving up once limit of them are found.
+     * A limit of 2 is enough to tell whether the solution is unique.
+     *
+     * @param limit The number of solutions after which counting stops.
+     * @return The number of solutions found, at most limit.
+     */
+    int countSolutions(int limit) {
+        return new Solver(this).countSolutions(limit);
+    }
+
     /**
      * This is a back-tracking method to fill a partially generated board.
      *
@@ -110,26 +313,63 @@ class  Board implements Cloneable{
     }
 
     /**
-     * This method generates a board preset with a given difficulty.
+     * Selects the engine used to solve this board and its clones.
+     *
+     * @param engine The solving strategy.
      */
-    void fillBoard() {
-        Random rand = new Random();
-        for (int placed = (size == 4) ? 4 : 26; placed > 0; placed--){
-            int n = rand.nextInt(size);
-            int i = rand.nextInt(size);
-            int j = rand.nextInt(size);
-            if (ruleChecker(i, j, n)) {
-                board[i][j] = n;
-                valid[i][j] = true;
-                mutable[i][j] = true;
-            }
-        }
+    void setEngine(SolverEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Returns the engine used to solve this board.
+     *
+     * @return The current solving strategy.
+     */
+    SolverEngine getEngine() {
+        return engine != null ? engine : SolverEngine.defaultFor(size);
+    }
+
+    /**
+     * Returns whether an engine was selected for this board, rather than the default of its size.
+     *
+     * @return True if setEngine was called with an engine.
+     */
+    boolean hasEngine() {
+        return engine != null;
+    }
+
+    /**
+     * Returns what the last generateBoard, isSolvable, solveSudoku, solveWithin
+     * or countSolutions call on this board cost.
+     *
+     * @return The metrics of the call, or null if there was none yet.
+     */
+    SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * This stores num into the position row col as a given number of the puzzle.
+     *
+     * @param row This is the row at which the number is stored.
+     * @param col This is the column at which the number is stored.
+     * @param num This is the given number.
+     */
+    void setGiven(int row, int col, int num) {
+        remove(row, col);
+        cells[row * size + col] |= GIVEN;
+        place(row, col, num);
     }
 
     /**
      * This method receives a coordinate in the matrix and checks if it is allowed.
-     * To check if the insertion is allowed, it relies on checkVertical, checkHorizontal,
-     * checkRange, and checkSubGrid.
+     * The insertion is allowed if num is in range and among the candidates of
+     * the square, which hold every rule of the constraints.
      *
      * @param row This is the row to be checked.
      * @param col This is the column to be checked.
@@ -137,8 +377,58 @@ class  Board implements Cloneable{
      * @return Returns whether the insertion was allowed or not.
      */
     boolean ruleChecker(int row, int col, int num) {
-        return (checkHorizontal(row, num) && checkVertical(col, num)
-                && checkSubGrid(row, col, num) && checkRange(num) && isMutable(row,col));
+        return checkRange(num) && (candidates(row, col) & (1 << num)) != 0;
+    }
+
+    /**
+     * This returns the numbers that ruleChecker would allow at position row col.
+     *
+     * @param row This is the row to be checked.
+     * @param col This is the column to be checked.
+     * @return Returns a bitmask where bit n is set if the number n is allowed.
+     */
+    int candidates(int row, int col) {
+        if (!isMutable(row, col)) {
+            return 0;
+        }
+        int cell = row * size + col, used = 0;
+        for (int unit : constraints.unitsOf(cell)) {
+            used |= masks[unit];
+        }
+        int mask = ~used & constraints.allowed(cell);
+        int cage = constraints.cageOf(cell);
+        if (cage >= 0) {
+            mask &= constraints.cageCandidates(constraints.cageSum(cage) - cageTotals[cage],
+                    constraints.cage(cage).length - cageFilled[cage]);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the rules of this board.
+     *
+     * @return The constraints of the puzzle.
+     */
+    ConstraintSet getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Changes the rules of this board, e.g. to a variant. The numbers are kept
+     * and counted again under the new rules.
+     *
+     * @param constraints The rules; their size must be the size of the board.
+     */
+    void setConstraints(ConstraintSet constraints) {
+        if (constraints.size() != size) {
+            throw new IllegalArgumentException(constraints + " on a board of size " + size);
+        }
+        byte[] old = cells;
+        init(constraints);
+        for (int cell = 0; cell < old.length; cell++) {
+            cells[cell] = (byte) (old[cell] & GIVEN);
+            place(cell / size, cell % size, old[cell] & VALUE);
+        }
     }
 
     /**
@@ -148,8 +438,7 @@ class  Board implements Cloneable{
      * @param col This is the column at which the number would be deleted.
      */
     void deleteElement(int row, int col) {
-        board[row][col] = 0;
-        valid[row][col] = false;
+        remove(row, col);
     }
 
     /**
@@ -160,76 +449,152 @@ class  Board implements Cloneable{
      * @return Returns the element at the index.
      */
     int getElement(int row, int col) {
-        return board[row][col];
+        return cells[row * size + col] & VALUE;
     }
 
     /**
-     * This stores num into the position row col and determines if the insertion is valid.
+     * This stores num into the position row col. The insertion is valid if no other
+     * copy of num is in the same row, column or sub-grid; a copy that was valid
+     * until now is marked invalid as well.
      *
      * @param row This is the row at which the number is inserted.
      * @param col This is the column at which the number is inserted.
      * @param num This is the number inserted into the matrix.
      */
     void setElement(int row, int col, int num) {
-        valid[row][col] = ruleChecker(row, col, num);
-        board[row][col] = num;
+        remove(row, col);
+        place(row, col, num);
     }
 
     /**
-     * This performs the horizontal rule check of sudoku.
+     * This writes num into the matrix and counts it in its units and its cage.
      *
-     * @param row This is the row which will be checked.
-     * @param num This is the number to be compared to the rest of the row.
-     * @return Returns if the number follows the rule.
+     * @param row This is the row at which the number is written.
+     * @param col This is the column at which the number is written.
+     * @param num This is the number written into the matrix.
      */
-    private boolean checkHorizontal(int row, int num) {
-        for (int i = 0; i < size; i++) {
-            if (board[row][i] == num) {
-                return false;
+    private void place(int row, int col, int num) {
+        cells[row * size + col] = (byte) ((cells[row * size + col] & ~VALUE) | (num & VALUE));
+        if (checkRange(num)) {
+            filled++;
+            hash ^= zobrist[(row * size + col) * size + num - 1];
+            for (int unit : constraints.unitsOf(row * size + col)) {
+                count(unit, row * size + col, num, 1);
             }
+            cage(row * size + col, num, 1);
         }
-        return true;
+        revalidate(row * size + col);
     }
 
     /**
-     * This performs the vertical rule check of sudoku.
+     * This clears the number at position row col and uncounts it. A copy left
+     * alone in a unit becomes valid again if it has no other conflict.
      *
-     * @param col This is the column which will be checked.
-     * @param num This is the number to be compared to the rest of the column.
-     * @return Returns if the number follows the rule.
+     * @param row This is the row at which the number is cleared.
+     * @param col This is the column at which the number is cleared.
      */
-    private boolean checkVertical(int col, int num) {
-        for (int i = 0; i < size; i++) {
-            if (board[i][col] == num) {
-                return false;
+    private void remove(int row, int col) {
+        int num = getElement(row, col);
+        cells[row * size + col] &= ~VALUE;
+        if (checkRange(num)) {
+            filled--;
+            hash ^= zobrist[(row * size + col) * size + num - 1];
+            for (int unit : constraints.unitsOf(row * size + col)) {
+                count(unit, row * size + col, num, -1);
             }
+            cage(row * size + col, num, -1);
         }
-        return true;
+        revalidate(row * size + col);
     }
 
     /**
-     * This performs the sub-grid rule check of sudoku.
+     * This adds delta to the count of num in a unit and updates the occupancy mask.
+     * When the count moves between one and two, the other copy of num in the unit
+     * changes between valid and conflicting.
      *
-     * @param row This is the row which will be checked.
-     * @param col This is the column which will be checked.
-     * @param num This is the number to be compared to the rest of the sub-grid.
-     * @return Returns if the number follows the rule.
+     * @param unit This is the index of the unit, as in masks.
+     * @param changed This is the square that changed, as row * size + col.
+     * @param num This is the number added or removed.
+     * @param delta This is 1 for an insertion and -1 for a deletion.
      */
-    private boolean checkSubGrid(int row, int col, int num) {
-        /*the starting position is determined by modding the
-         * row/col num by the sqrt of the size*/
-        int rowS = (int) Math.sqrt(size) * (int) Math.floor(Math.abs(row / Math.sqrt(size)));
-        int colS = (int) Math.sqrt(size) * (int) Math.floor(Math.abs(col / Math.sqrt(size)));
-        int rowE = (int) (rowS + (Math.sqrt(size)));
-        int colE = (int) (colS + (Math.sqrt(size)));
-        for (int i = rowS; i < rowE; i++) {
-            for (int j = colS; j < colE; j++) {
-                if (board[i][j] == num) {
-                    return false; //if a matching number is found
-                }
+    private void count(int unit, int changed, int num, int delta) {
+        int index = unit * (size + 1) + num;
+        int before = counts[index], after = before + delta;
+        counts[index] = (byte) after;
+        if (after == 0) {
+            masks[unit] &= ~(1 << num);
+        } else {
+            masks[unit] |= 1 << num;
+        }
+        if (Math.min(before, after) != 1 || Math.max(before, after) != 2) {
+            return;
+        }
+        for (int cell : constraints.unit(unit)) {
+            if (cell != changed && (cells[cell] & VALUE) == num) {
+                revalidate(cell);
             }
         }
-        return true;
+    }
+
+    /**
+     * This adds a number to the sum of the cage of a square, if it has one, and
+     * revalidates the other squares of the cage, whose sum may have become right or wrong.
+     *
+     * @param changed This is the square that changed, as row * size + col.
+     * @param num This is the number added or removed.
+     * @param delta This is 1 for an insertion and -1 for a deletion.
+     */
+    private void cage(int changed, int num, int delta) {
+        int cage = constraints.cageOf(changed);
+        if (cage < 0) {
+            return;
+        }
+        cageTotals[cage] += delta * num;
+        cageFilled[cage] += delta;
+        for (int cell : constraints.cage(cage)) {
+            if (cell != changed) {
+                revalidate(cell);
+            }
+        }
+    }
+
+    /**
+     * This sets the valid flag of a square from the counts of its units, the
+     * numbers its parity allows, and the sum of its cage.
+     *
+     * @param cell This is the square, as row * size + col.
+     */
+    private void revalidate(int cell) {
+        int num = cells[cell] & VALUE;
+        boolean now = checkRange(num) && (constraints.allowed(cell) & (1 << num)) != 0;
+        for (int unit : constraints.unitsOf(cell)) {
+            now &= counts[unit * (size + 1) + num] == 1;
+        }
+        int cage = constraints.cageOf(cell);
+        if (cage >= 0) {
+            int sum = constraints.cageSum(cage);
+            now &= cageTotals[cage] <= sum
+                    && (cageFilled[cage] < constraints.cage(cage).length || cageTotals[cage] == sum);
+        }
+        boolean was = (cells[cell] & VALID) != 0;
+        if (now && !was) {
+            cells[cell] |= VALID;
+            valid++;
+        } else if (!now && was) {
+            cells[cell] &= ~VALID;
+            valid--;
+        }
+    }
+
+    /**
+     * This returns the index of the sub-grid holding the position row col.
+     *
+     * @param row This is the row of the position.
+     * @param col This is the column of the position.
+     * @return Returns the sub-grid index, counted left to right and top to bottom.
+     */
+    int boxOf(int row, int col) {
+        return geometry.boxOf(row * size + col);
     }
 
     /**
@@ -250,23 +615,25 @@ class  Board implements Cloneable{
      * @return Returns the value stored at the index.
      */
     boolean isValid(int row, int col) {
-        return valid[row][col];
+        return (cells[row * size + col] & VALID) != 0;
     }
 
     /**
      * This checks if there are any 0's left in the matrix.
      *
-     * @return Returns if there are no 0's left in the matrix.
+     * @return Returns if there are no 0's left and no number conflicts with another.
      */
     boolean isSolved() {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (!valid[i][j]) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return valid == cells.length;
+    }
+
+    /**
+     * This checks if any number conflicts with another copy of it.
+     *
+     * @return Returns if some square holds a number that is not valid.
+     */
+    boolean hasConflicts() {
+        return valid < filled;
     }
 
     /**
@@ -275,7 +642,7 @@ class  Board implements Cloneable{
      * @return Boolean determining if it can be mutable.
      */
     boolean isMutable(int row, int col) {
-        return !mutable[row][col];
+        return (cells[row * size + col] & GIVEN) == 0;
     }
 
     /**
@@ -283,10 +650,24 @@ class  Board implements Cloneable{
      */
     void reset(int size) {
         this.size = size;
-        this.board = new int[size][size];
-        this.valid = new boolean[size][size];
-        this.mutable = new boolean[size][size];
+        this.geometry = Geometry.of(size);
+        this.zobrist = zobrist(size);
+        init(ConstraintSet.classic(size));
+    }
 
+    /**
+     * Empty the board and size its counters for the given rules.
+     */
+    private void init(ConstraintSet constraints) {
+        this.constraints = constraints;
+        this.cells = new byte[size * size];
+        this.masks = new int[constraints.unitCount()];
+        this.counts = new byte[constraints.unitCount() * (size + 1)];
+        this.cageTotals = new int[constraints.cageCount()];
+        this.cageFilled = new int[constraints.cageCount()];
+        this.filled = 0;
+        this.valid = 0;
+        this.hash = 0;
     }
 
     /**
@@ -309,7 +690,7 @@ class  Board implements Cloneable{
         System.out.println("==== "+msg+" ====");
         for (int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
-                System.out.print(board[i][j]+" ");
+                System.out.print(getElement(i, j)+" ");
             }
             System.out.println();
         }
@@ -149,19 +149,24 @@ public class BoardPanel extends JPanel{
      * @param g This method receives the Graphics class to draw the numbers.
      */
     private void drawNumbers(Graphics g) {
+        FontMetrics metrics = g.getFontMetrics();
         for (int i = 0; i < board.size(); i++) {
             for (int j = 0; j < board.size(); j++) {
                 //if the number in the matrix are not 0's
                 if (board.getElement(i, j) != 0) {
+                    String number = String.valueOf(board.getElement(i, j));
+                    //centered on the square, also for two digit numbers
+                    int x = (j * squareSize) + (squareSize - metrics.stringWidth(number)) / 2;
+                    int y = (i * squareSize) + (squareSize / 2 + 4);
                     //if valid
                     if (board.isValid(i, j)) {
                         g.setColor(Color.WHITE);
-                        g.drawString(String.valueOf(board.getElement(i, j)), (j * squareSize) + (squareSize / 2 - 3), (i * squareSize) + (squareSize / 2 + 4));
+                        g.drawString(number, x, y);
                     }
                     //if not valid
                     else if (!board.isValid(i, j)) {
                         g.setColor(Color.BLACK);
-                        g.drawString(String.valueOf(board.getElement(i, j)), (j * squareSize) + (squareSize / 2 - 3), (i * squareSize) + (squareSize / 2 + 4));
+                        g.drawString(number, x, y);
                     }
                 }
             }
@@ -174,9 +179,10 @@ public class BoardPanel extends JPanel{
      * @param g This method receives the Graphics class in order to draw the square.
      */
     private void highlightInvalid(Graphics g) {
+        boolean conflicts = board.hasConflicts();
         for (int i = 0; i < board.size(); i++) {
             for (int j = 0; j < board.size(); j++) {
-                if (!board.isValid(i, j) && board.getElement(i, j) != 0) {
+                if (conflicts && !board.isValid(i, j) && board.getElement(i, j) != 0) {
                     g.setColor(Color.WHITE);
                     g.fillRect(j * squareSize, i * squareSize, squareSize, squareSize);
                 } else if (!board.isMutable(i, j)) {
@@ -220,12 +226,11 @@ public class BoardPanel extends JPanel{
         g.drawLine(0, 0, 0, squareSize * board.size());             //left line
         g.drawLine(0, squareSize * board.size(), squareSize * board.size(), squareSize * board.size()); //bottom line
         g.drawLine(squareSize * board.size(), 0, squareSize * board.size(), squareSize * board.size()); //right line
-        /*this draw the grid in the rectangle*/
-        for (int i = 0; i < 276; i++) {
-            if ((i % (squareSize * Math.sqrt(board.size())) == 0)) {
-                g.drawLine(i, 0, i, squareSize * board.size());
-                g.drawLine(0, i, squareSize * board.size(), i); //bottom line
-            }
+        /*this draw the grid in the rectangle, one line every sub-grid*/
+        int boxPixels = squareSize * Geometry.of(board.size()).boxSize();
+        for (int i = 0; i <= squareSize * board.size(); i += boxPixels) {
+            g.drawLine(i, 0, i, squareSize * board.size());
+            g.drawLine(0, i, squareSize * board.size(), i); //bottom line
         }
     }
 
@@ -237,7 +242,7 @@ public class BoardPanel extends JPanel{
     private void insideLines(Graphics g) {
 //        System.out.println("insideLines");
         g.setColor(Color.GRAY);
-        for (int i = 0; i < 276; i = i + squareSize) {
+        for (int i = 0; i < squareSize * board.size(); i = i + squareSize) {
             g.drawLine(i, 0, i, squareSize * board.size());
             g.drawLine(0, i, squareSize * board.size(), i); //bottom line
 
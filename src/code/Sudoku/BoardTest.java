@@ -0,0 +1,222 @@
+package code.Sudoku;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link Board} class by focusing on the rule checks
+ * and the occupancy masks kept by <code>setElement</code> and
+ * <code>deleteElement</code>.
+ */
+public class BoardTest {
+
+    private Board board;
+
+    @Before
+    public void setUp() {
+        board = new Board(9);
+    }
+
+    @Test
+    public void testRuleCheckerRow() {
+        board.setElement(0, 0, 5);
+        assertFalse(board.ruleChecker(0, 8, 5));
+        assertTrue(board.ruleChecker(1, 8, 5));
+    }
+
+    @Test
+    public void testRuleCheckerColumn() {
+        board.setElement(0, 0, 5);
+        assertFalse(board.ruleChecker(8, 0, 5));
+        assertTrue(board.ruleChecker(8, 1, 5));
+    }
+
+    @Test
+    public void testRuleCheckerSubGrid() {
+        board.setElement(4, 4, 7);
+        assertFalse(board.ruleChecker(3, 5, 7));
+        assertTrue(board.ruleChecker(2, 5, 7));
+    }
+
+    @Test
+    public void testRuleCheckerRange() {
+        assertFalse(board.ruleChecker(0, 0, 0));
+        assertFalse(board.ruleChecker(0, 0, 10));
+    }
+
+    @Test
+    public void testDeleteElement() {
+        board.setElement(0, 0, 5);
+        board.deleteElement(0, 0);
+        assertTrue(board.ruleChecker(0, 8, 5));
+        assertTrue(board.ruleChecker(8, 0, 5));
+        assertTrue(board.ruleChecker(1, 1, 5));
+    }
+
+    @Test
+    public void testDeleteDuplicate() {
+        board.setElement(0, 0, 5);
+        board.setElement(0, 4, 5); // invalid duplicate in the same row
+        assertFalse(board.isValid(0, 4));
+        board.deleteElement(0, 0);
+        assertFalse(board.ruleChecker(0, 8, 5));
+        assertTrue(board.ruleChecker(8, 0, 5));
+    }
+
+    @Test
+    public void testConflictMarksBothCopies() {
+        board.setElement(0, 0, 5);
+        board.setElement(1, 1, 5);
+        assertFalse(board.isValid(0, 0));
+        assertFalse(board.isValid(1, 1));
+        assertTrue(board.hasConflicts());
+        board.deleteElement(1, 1);
+        assertTrue(board.isValid(0, 0));
+        assertFalse(board.hasConflicts());
+    }
+
+    @Test
+    public void testConflictInTwoUnits() {
+        board.setElement(0, 0, 5);
+        board.setElement(0, 8, 5);
+        board.setElement(8, 0, 5);
+        board.setElement(0, 8, 6);
+        assertFalse(board.isValid(0, 0));
+        assertTrue(board.isValid(0, 8));
+        board.setElement(8, 0, 6);
+        assertTrue(board.isValid(0, 0));
+        assertTrue(board.isValid(0, 8));
+        assertTrue(board.isValid(8, 0));
+    }
+
+    @Test
+    public void testIsSolved() {
+        Board small = new Board(4);
+        int[] grid = {1, 2, 3, 4, 3, 4, 1, 2, 2, 1, 4, 3, 4, 3, 2, 1};
+        for (int i = 0; i < grid.length; i++) {
+            small.setElement(i / 4, i % 4, grid[i]);
+        }
+        assertTrue(small.isSolved());
+        small.setElement(0, 0, 2);
+        assertFalse(small.isSolved());
+        small.setElement(0, 0, 1);
+        assertTrue(small.isSolved());
+        small.deleteElement(3, 3);
+        assertFalse(small.isSolved());
+    }
+
+    @Test
+    public void testOverwriteElement() {
+        board.setElement(0, 0, 5);
+        board.setElement(0, 0, 6);
+        assertTrue(board.ruleChecker(0, 8, 5));
+        assertFalse(board.ruleChecker(0, 8, 6));
+    }
+
+    @Test
+    public void testCandidates() {
+        board.setElement(0, 1, 1);
+        board.setElement(1, 0, 2);
+        board.setElement(2, 2, 3);
+        int mask = board.candidates(0, 0);
+        for (int num = 1; num <= 9; num++) {
+            assertEquals(board.ruleChecker(0, 0, num), (mask & (1 << num)) != 0);
+        }
+        assertEquals(6, Integer.bitCount(mask));
+    }
+
+    @Test
+    public void testHash() {
+        assertEquals(0, board.hash());
+        board.setElement(0, 0, 5);
+        board.setElement(4, 4, 7);
+        long hash = board.hash();
+        assertNotEquals(0, hash);
+        board.setElement(4, 4, 8);
+        assertNotEquals(hash, board.hash());
+        board.setElement(4, 4, 7);
+        assertEquals(hash, board.hash());
+
+        /*the same numbers in another order, one of them given*/
+        Board other = new Board(9);
+        other.setElement(4, 4, 7);
+        other.setGiven(0, 0, 5);
+        assertEquals(hash, other.hash());
+        assertEquals(hash, other.cloneBoard().hash());
+        other.deleteElement(4, 4);
+        other.deleteElement(0, 0);
+        assertEquals(0, other.hash());
+    }
+
+    @Test
+    public void testFromSquares() {
+        Board other = Board.fromSquares(4, new int[]{1, 0, 3, 1, 2, 3, 4, 0});
+        assertEquals(3, other.getElement(0, 1));
+        assertFalse(other.isMutable(0, 1));
+        assertEquals(4, other.getElement(3, 2));
+        assertTrue(other.isMutable(3, 2));
+        try {
+            Board.fromSquares(4, new int[]{4, 0, 1, 1});
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("(4, 0, 1)"));
+        }
+    }
+
+    @Test
+    public void testVariantRules() {
+        int[] parity = new int[81];
+        parity[1] = ConstraintSet.EVEN;
+        board.setConstraints(ConstraintSet.classic(9).withDiagonals().withParity(parity)
+                .withCages(new int[][]{{9, 10}}, new int[]{3}));
+        board.setElement(0, 0, 5);
+        assertFalse(board.ruleChecker(8, 8, 5));
+        assertFalse(board.ruleChecker(0, 1, 3));
+        assertTrue(board.ruleChecker(0, 1, 4));
+        /*the cage of (1, 0) and (1, 1) adds up to 3*/
+        assertEquals((1 << 1) | (1 << 2), board.candidates(1, 0));
+        board.setElement(1, 0, 1);
+        board.setElement(1, 1, 3);
+        assertFalse(board.isValid(1, 0));
+        assertFalse(board.isValid(1, 1));
+        board.setElement(1, 1, 2);
+        assertTrue(board.isValid(1, 0));
+        assertTrue(board.isValid(1, 1));
+
+        /*the numbers stay when the rules change back*/
+        board.setElement(8, 8, 5);
+        assertFalse(board.isValid(8, 8));
+        board.setConstraints(ConstraintSet.classic(9));
+        assertTrue(board.isValid(8, 8));
+        assertEquals(5, board.getElement(0, 0));
+    }
+
+    @Test
+    public void testGeometry() {
+        Geometry geometry = Geometry.of(9);
+        assertSame(geometry, Geometry.of(9));
+        assertEquals(3, geometry.boxSize());
+        assertEquals(4, geometry.boxOf(4 * 9 + 5));
+        assertArrayEquals(new int[]{4, 9 + 5, 2 * 9 + 4}, geometry.unitsOf(4 * 9 + 5));
+        assertArrayEquals(new int[]{30, 31, 32, 39, 40, 41, 48, 49, 50}, geometry.unit(2 * 9 + 4));
+        for (int cell = 0; cell < 81; cell++) {
+            assertEquals(20, geometry.peers(cell).length);
+            for (int peer : geometry.peers(cell)) {
+                assertTrue(peer != cell && (peer / 9 == cell / 9 || peer % 9 == cell % 9
+                        || geometry.boxOf(peer) == geometry.boxOf(cell)));
+            }
+        }
+        assertEquals(3 * 24 - 2 * 4, Geometry.of(25).peers(0).length);
+    }
+
+    @Test
+    public void testCloneBoard() {
+        board.setElement(0, 0, 5);
+        Board clone = board.cloneBoard();
+        clone.deleteElement(0, 0);
+        assertFalse(board.ruleChecker(0, 8, 5));
+        assertTrue(clone.ruleChecker(0, 8, 5));
+    }
+}
@@ -0,0 +1,313 @@
+package code.Sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps a board to one representative of all the boards that are the same
+ * puzzle in disguise, so duplicates can be found by comparing fingerprints.
+ * <p>
+ * On boards up to 9x9 the transformations are transposition, swapping bands
+ * and stacks, swapping rows inside a band and columns inside a stack, and
+ * relabelling the numbers. The representative is the smallest grid, read
+ * column by column with the numbers relabelled in order of appearance.
+ * Every row order is tried; the columns are then chosen one at a time,
+ * keeping only those that give the smallest prefix so far.
+ * <p>
+ * The group of larger boards is too big to search, so there only
+ * transposition and relabelling are taken into account.
+ * <p>
+ * The tables of the last board size are cached, so a canonicalizer is cheap
+ * to reuse but must not be shared between threads.
+ */
+class Canonicalizer {
+
+    private int size, boxSize;
+    /** Every row order that keeps the bands together. */
+    private List<int[]> rowOrders;
+
+    /** The board being canonicalized, transposed or not. */
+    private int[][] grid;
+    /** An earlier column of the same stack with the same numbers, or -1. */
+    private int[] twin;
+    /** Row order of the search in progress. */
+    private int[] rows;
+    /** Buffers of every depth of the search. */
+    private byte[][] columns, smallests;
+    private int[][] ties, labels;
+    /** Labels given to new numbers while reading one column, valid where seen equals stamp. */
+    private int[] fresh, seen;
+    private int stamp;
+    private byte[] current;
+    private byte[] best;
+
+    /**
+     * Returns the numbers of the representative board, row by row, with 0 for empty squares.
+     * Boards that are the same puzzle under the transformations get equal arrays.
+     *
+     * @param board The board to be examined; it is not changed.
+     * @return Returns size * size numbers.
+     */
+    byte[] canonicalForm(Board board) {
+        if (board.size() != size) {
+            layout(board.size());
+        }
+        best = null;
+        current = new byte[size * size];
+        for (int transpose = 0; transpose < 2; transpose++) {
+            grid = new int[size][size];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    grid[row][col] = transpose == 0 ? board.getElement(row, col) : board.getElement(col, row);
+                }
+            }
+            findTwins();
+            if (rowOrders == null) {
+                relabelOnly();
+                continue;
+            }
+            for (int[] order : rowOrders) {
+                rows = order;
+                search(0, 0, -1, new int[size + 1], 1);
+            }
+        }
+        /*the key is read column by column; transposing it gives the rows*/
+        byte[] form = new byte[size * size];
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                form[row * size + col] = best[col * size + row];
+            }
+        }
+        return form;
+    }
+
+    /**
+     * Returns a 64-bit hash of the canonical form. Boards that are the same puzzle
+     * under the transformations get the same fingerprint.
+     *
+     * @param board The board to be examined; it is not changed.
+     * @return Returns the fingerprint.
+     */
+    long fingerprint(Board board) {
+        /*FNV-1a*/
+        long hash = 0xcbf29ce484222325L ^ board.size();
+        for (byte value : canonicalForm(board)) {
+            hash = (hash ^ value) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Choose the column at position j of the key, and the ones after it.
+     *
+     * @param j Number of columns already chosen.
+     * @param used Bitmask of the columns already chosen.
+     * @param stack Stack the next column must come from, or -1 to start a new one.
+     * @param labels New label of every number, or 0 if it has none yet.
+     * @param next Next label to be given.
+     */
+    private void search(int j, int used, int stack, int[] labels, int next) {
+        if (j == size) {
+            if (best == null || compare(current, best, 0, current.length) < 0) {
+                best = current.clone();
+            }
+            return;
+        }
+        /*the key so far is never larger than the best one; while equal, the best bounds the next column*/
+        byte[] bound = best != null && compare(current, best, 0, j * size) == 0 ? best : null;
+        byte[] column = columns[j];
+        byte[] smallest = smallests[j];
+        int[] tied = ties[j];
+        int count = 0;
+        for (int col = 0; col < size; col++) {
+            if ((used & (1 << col)) != 0 || (stack >= 0 && col / boxSize != stack)) {
+                continue;
+            }
+            int cmp = count == 0
+                    ? read(col, labels, next, column, bound, j * size)
+                    : read(col, labels, next, column, smallest, 0);
+            if (cmp < 0 || (count == 0 && cmp == 0)) {
+                System.arraycopy(column, 0, smallest, 0, size);
+                count = 0;
+            }
+            if (cmp <= 0) {
+                tied[count++] = col;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        System.arraycopy(smallest, 0, current, j * size, size);
+        for (int t = 0; t < count; t++) {
+            int col = tied[t];
+            if (twin[col] >= 0 && (used & (1 << twin[col])) == 0) {
+                /*swapping equal columns gives the same key*/
+                continue;
+            }
+            int[] after = this.labels[j];
+            System.arraycopy(labels, 0, after, 0, size + 1);
+            int more = next;
+            for (int row : rows) {
+                int value = grid[row][col];
+                if (value != 0 && after[value] == 0) {
+                    after[value] = more++;
+                }
+            }
+            search(j + 1, used | 1 << col, (j + 1) % boxSize == 0 ? -1 : col / boxSize, after, more);
+        }
+    }
+
+    /**
+     * Link every column to an earlier one of the same stack holding the same numbers.
+     */
+    private void findTwins() {
+        twin = new int[size];
+        for (int col = 0; col < size; col++) {
+            twin[col] = -1;
+            for (int other = col - 1; other >= col - col % boxSize && twin[col] < 0; other--) {
+                boolean same = true;
+                for (int row = 0; row < size && same; row++) {
+                    same = grid[row][col] == grid[row][other];
+                }
+                if (same) {
+                    twin[col] = other;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a column in the current row order, relabelling its numbers, and
+     * compare it with the numbers of bound from the given offset. Reading stops
+     * as soon as the column is known to be larger.
+     *
+     * @return Returns a negative number, zero or a positive number as the column
+     * is smaller than, equal to or larger than the bound, or -1 without a bound.
+     */
+    private int read(int col, int[] labels, int next, byte[] column, byte[] bound, int offset) {
+        stamp++;
+        int cmp = bound == null ? -1 : 0;
+        for (int i = 0; i < size; i++) {
+            int value = grid[rows[i]][col];
+            byte label;
+            if (value == 0) {
+                label = 0;
+            } else if (labels[value] != 0) {
+                label = (byte) labels[value];
+            } else {
+                if (seen[value] != stamp) {
+                    seen[value] = stamp;
+                    fresh[value] = next++;
+                }
+                label = (byte) fresh[value];
+            }
+            column[i] = label;
+            if (cmp == 0 && label != bound[offset + i]) {
+                cmp = label - bound[offset + i];
+                if (cmp > 0) {
+                    return cmp;
+                }
+            }
+        }
+        return cmp;
+    }
+
+    /**
+     * Compares length numbers of a, from its start, with b from the given offset.
+     */
+    private static int compare(byte[] a, int from, byte[] b, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[from + i] != b[offset + i]) {
+                return a[from + i] - b[offset + i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the first length numbers of a and b, from the given offset.
+     */
+    private static int compare(byte[] a, byte[] b, int offset, int length) {
+        return compare(a, offset, b, offset, length);
+    }
+
+    /**
+     * Relabel the numbers of the grid in order of appearance, column by column,
+     * and keep the result if it is the smallest so far.
+     */
+    private void relabelOnly() {
+        int[] labels = new int[size + 1];
+        int next = 1;
+        byte[] key = new byte[size * size];
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                int value = grid[row][col];
+                if (value != 0 && labels[value] == 0) {
+                    labels[value] = next++;
+                }
+                key[col * size + row] = (byte) (value == 0 ? 0 : labels[value]);
+            }
+        }
+        if (best == null || compare(key, best, 0, key.length) < 0) {
+            best = key;
+        }
+    }
+
+    /**
+     * Build the row orders of a board size, or none if the size is too large to search.
+     */
+    private void layout(int size) {
+        this.size = size;
+        this.boxSize = Geometry.of(size).boxSize();
+        columns = new byte[size][size];
+        smallests = new byte[size][size];
+        ties = new int[size][size];
+        labels = new int[size][size + 1];
+        fresh = new int[size + 1];
+        seen = new int[size + 1];
+        rowOrders = null;
+        if (size > 9) {
+            return;
+        }
+        List<int[]> perms = permutations(boxSize);
+        rowOrders = new ArrayList<>();
+        for (int[] bands : perms) {
+            addRowOrders(bands, 0, new int[size], perms);
+        }
+    }
+
+    private void addRowOrders(int[] bands, int band, int[] order, List<int[]> perms) {
+        if (band == boxSize) {
+            rowOrders.add(order.clone());
+            return;
+        }
+        for (int[] inside : perms) {
+            for (int i = 0; i < boxSize; i++) {
+                order[band * boxSize + i] = bands[band] * boxSize + inside[i];
+            }
+            addRowOrders(bands, band + 1, order, perms);
+        }
+    }
+
+    /**
+     * Returns every permutation of the numbers 0 to n - 1.
+     */
+    private static List<int[]> permutations(int n) {
+        List<int[]> result = new ArrayList<>();
+        permute(new int[n], 0, 0, result);
+        return result;
+    }
+
+    private static void permute(int[] perm, int k, int used, List<int[]> result) {
+        if (k == perm.length) {
+            result.add(perm.clone());
+            return;
+        }
+        for (int i = 0; i < perm.length; i++) {
+            if ((used & (1 << i)) == 0) {
+                perm[k] = i;
+                permute(perm, k + 1, used | 1 << i, result);
+            }
+        }
+    }
+}
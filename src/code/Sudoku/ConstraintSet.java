@@ -0,0 +1,306 @@
+package code.Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The rules of a puzzle, compiled into tables once per layout so that the
+ * board and the engines check every variant with the same mask lookups.
+ * <p>
+ * Rules are expressed three ways:
+ * <ul>
+ *     <li>units: groups of squares holding every number at most once. The
+ *     rows, columns and sub-grids come first; a variant can add the two
+ *     diagonals or the cages of a killer puzzle. Units of exactly size
+ *     squares hold every number once and are called houses.</li>
+ *     <li>allowed numbers per square, e.g. only odd or only even ones.</li>
+ *     <li>cages: units whose numbers also add up to a given sum.</li>
+ * </ul>
+ * Sets are immutable. The classic set of every size is shared; the with
+ * methods return a new set, to be shared by a puzzle and all its boards.
+ */
+class ConstraintSet {
+
+    /** Parity of a square: any number, odd numbers only, even numbers only. */
+    static final int ANY = 0, ODD = 1, EVEN = 2;
+
+    /** Classic sets by board size, built on first use. */
+    private static final ConstraintSet[] CLASSIC = new ConstraintSet[32];
+
+    private final int size;
+    private final String name;
+    /** Squares of every unit; rows, then columns, then sub-grids, then the units of the variant. */
+    private final int[][] units;
+    /** Units of every square, as indexes into units. */
+    private final int[][] unitsOf;
+    /** Bitmask of the numbers allowed in every square. */
+    private final int[] allowed;
+    /** Cage of every square, or -1. */
+    private final int[] cageOf;
+    /** Squares and sum of every cage. */
+    private final int[][] cages;
+    private final int[] sums;
+
+    private ConstraintSet(int size, String name, int[][] units, int[] allowed, int[][] cages, int[] sums) {
+        this.size = size;
+        this.name = name;
+        this.units = units;
+        this.allowed = allowed;
+        this.cages = cages;
+        this.sums = sums;
+        int cells = size * size;
+        int[] counts = new int[cells];
+        for (int[] unit : units) {
+            for (int cell : unit) {
+                counts[cell]++;
+            }
+        }
+        unitsOf = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            unitsOf[cell] = new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int u = 0; u < units.length; u++) {
+            for (int cell : units[u]) {
+                unitsOf[cell][counts[cell]++] = u;
+            }
+        }
+        cageOf = new int[cells];
+        Arrays.fill(cageOf, -1);
+        for (int c = 0; c < cages.length; c++) {
+            for (int cell : cages[c]) {
+                cageOf[cell] = c;
+            }
+        }
+    }
+
+    /**
+     * Returns the rules of classic Sudoku: every row, column and sub-grid holds every number once.
+     *
+     * @param size The size of the board.
+     * @return The shared classic set of that size.
+     */
+    static ConstraintSet classic(int size) {
+        synchronized (CLASSIC) {
+            if (CLASSIC[size] == null) {
+                Geometry geometry = Geometry.of(size);
+                int[][] units = new int[3 * size][];
+                for (int u = 0; u < units.length; u++) {
+                    units[u] = geometry.unit(u);
+                }
+                int[] allowed = new int[size * size];
+                Arrays.fill(allowed, ((1 << size) - 1) << 1);
+                CLASSIC[size] = new ConstraintSet(size, "classic", units, allowed, new int[0][], new int[0]);
+            }
+            return CLASSIC[size];
+        }
+    }
+
+    /**
+     * Returns these rules with both main diagonals as houses as well.
+     *
+     * @return Returns the new set.
+     */
+    ConstraintSet withDiagonals() {
+        int[][] diagonals = new int[2][size];
+        for (int i = 0; i < size; i++) {
+            diagonals[0][i] = i * size + i;
+            diagonals[1][i] = i * size + size - 1 - i;
+        }
+        return new ConstraintSet(size, name + "+diagonal", concat(units, diagonals), allowed, cages, sums);
+    }
+
+    /**
+     * Returns these rules with the cages of a killer puzzle: the numbers of a
+     * cage are all different and add up to its sum.
+     *
+     * @param cages The squares of every cage, as row * size + col; a square is in at most one cage.
+     * @param sums The sum of every cage.
+     * @return Returns the new set.
+     * @throws IllegalArgumentException If a cage is out of the board, overlaps another, or has an impossible sum.
+     */
+    ConstraintSet withCages(int[][] cages, int[] sums) {
+        if (cages.length != sums.length) {
+            throw new IllegalArgumentException(cages.length + " cages but " + sums.length + " sums");
+        }
+        boolean[] used = new boolean[size * size];
+        for (int[] cage : this.cages) {
+            for (int cell : cage) {
+                used[cell] = true;
+            }
+        }
+        int[][] copies = new int[cages.length][];
+        for (int c = 0; c < cages.length; c++) {
+            int k = cages[c].length;
+            if (k == 0 || k > size || sums[c] < k * (k + 1) / 2 || sums[c] > k * (2 * size - k + 1) / 2) {
+                throw new IllegalArgumentException("impossible cage " + Arrays.toString(cages[c]) + " = " + sums[c]);
+            }
+            for (int cell : cages[c]) {
+                if (cell < 0 || cell >= used.length || used[cell]) {
+                    throw new IllegalArgumentException("bad or shared square " + cell + " in cage " + c);
+                }
+                used[cell] = true;
+            }
+            copies[c] = cages[c].clone();
+        }
+        int[] allSums = Arrays.copyOf(this.sums, this.sums.length + sums.length);
+        System.arraycopy(sums, 0, allSums, this.sums.length, sums.length);
+        return new ConstraintSet(size, name + "+killer", concat(units, copies), allowed,
+                concat(this.cages, copies), allSums);
+    }
+
+    /**
+     * Returns these rules with squares restricted to odd or even numbers.
+     *
+     * @param parity {@link #ANY}, {@link #ODD} or {@link #EVEN} for every square, in row-major order.
+     * @return Returns the new set.
+     */
+    ConstraintSet withParity(int[] parity) {
+        if (parity.length != size * size) {
+            throw new IllegalArgumentException("parity of " + parity.length + " squares on a board of " + size * size);
+        }
+        int odd = 0;
+        for (int num = 1; num <= size; num += 2) {
+            odd |= 1 << num;
+        }
+        int[] restricted = allowed.clone();
+        for (int cell = 0; cell < parity.length; cell++) {
+            if (parity[cell] == ODD) {
+                restricted[cell] &= odd;
+            } else if (parity[cell] == EVEN) {
+                restricted[cell] &= ~odd;
+            }
+        }
+        return new ConstraintSet(size, name + "+parity", units, restricted, cages, sums);
+    }
+
+    private static int[][] concat(int[][] a, int[][] b) {
+        int[][] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether these are the rules of classic Sudoku, without any variant.
+     *
+     * @return True for the classic set of a size.
+     */
+    boolean isClassic() {
+        return units.length == 3 * size && cages.length == 0 && allowed == classic(size).allowed;
+    }
+
+    /**
+     * Returns the number of units.
+     *
+     * @return The number of units, at least 3 * size.
+     */
+    int unitCount() {
+        return units.length;
+    }
+
+    /**
+     * Returns the squares of a unit. The array is shared and must not be changed.
+     *
+     * @param unit The index of the unit.
+     * @return The squares as row * size + col.
+     */
+    int[] unit(int unit) {
+        return units[unit];
+    }
+
+    /**
+     * Returns whether a unit has one square per number, so that every number is in it exactly once.
+     *
+     * @param unit The index of the unit.
+     * @return True for rows, columns, sub-grids and diagonals.
+     */
+    boolean isHouse(int unit) {
+        return units[unit].length == size;
+    }
+
+    /**
+     * Returns the units of a square: its row, column and sub-grid first. The array is shared and must not be changed.
+     *
+     * @param cell The square, as row * size + col.
+     * @return The indexes of its units.
+     */
+    int[] unitsOf(int cell) {
+        return unitsOf[cell];
+    }
+
+    /**
+     * Returns the numbers allowed in a square by its parity.
+     *
+     * @param cell The square, as row * size + col.
+     * @return Returns a bitmask with bit n set if n is allowed.
+     */
+    int allowed(int cell) {
+        return allowed[cell];
+    }
+
+    /**
+     * Returns the number of cages.
+     *
+     * @return The number of cages, 0 unless this is a killer puzzle.
+     */
+    int cageCount() {
+        return cages.length;
+    }
+
+    /**
+     * Returns the cage of a square.
+     *
+     * @param cell The square, as row * size + col.
+     * @return The index of the cage, or -1 if the square is in none.
+     */
+    int cageOf(int cell) {
+        return cageOf[cell];
+    }
+
+    /**
+     * Returns the squares of a cage. The array is shared and must not be changed.
+     *
+     * @param cage The index of the cage.
+     * @return The squares as row * size + col.
+     */
+    int[] cage(int cage) {
+        return cages[cage];
+    }
+
+    /**
+     * Returns the sum of a cage.
+     *
+     * @param cage The index of the cage.
+     * @return The sum its numbers must add up to.
+     */
+    int cageSum(int cage) {
+        return sums[cage];
+    }
+
+    /**
+     * Returns the numbers that still fit a cage with the given sum left for the
+     * given number of empty squares: the other squares need at least 1, 2, ...
+     *
+     * @param left The sum left, the cage sum minus the numbers in the cage.
+     * @param empty The number of empty squares of the cage, at least 1.
+     * @return Returns a bitmask with bit n set if n fits.
+     */
+    int cageCandidates(int left, int empty) {
+        if (empty == 1) {
+            return left >= 1 && left <= size ? 1 << left : 0;
+        }
+        int most = left - (empty - 1) * empty / 2;
+        if (most < 1) {
+            return 0;
+        }
+        return most >= size ? ((1 << size) - 1) << 1 : (1 << (most + 1)) - 2;
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + " " + name;
+    }
+}
@@ -0,0 +1,240 @@
+package code.Sudoku;
+
+/**
+ * Solves a board as an exact-cover problem with Knuth's Dancing Links.
+ * Every empty square and every (row, number), (column, number) and
+ * (sub-grid, number) pair not yet present on the board is a column of
+ * the matrix, and every allowed placement is a row covering four of them.
+ * <p>
+ * Variants whose units are all houses, such as diagonal Sudoku, add a
+ * (unit, number) column per extra house; parity only removes rows. The sum
+ * of a killer cage is not an exact-cover constraint, so boards with cages
+ * are handed to {@link SolverEngine#PROPAGATION}.
+ */
+class DancingLinksEngine implements SolverEngine {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean solve(Board board, SearchContext context) {
+        if (board.getConstraints().cageCount() > 0) {
+            return PROPAGATION.solve(board, context);
+        }
+        Matrix matrix = new Matrix(board, context);
+        if (matrix.search(0, 1) == 0) {
+            return false;
+        }
+        matrix.apply(board);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countSolutions(Board board, int limit, SearchContext context) {
+        if (board.getConstraints().cageCount() > 0) {
+            return PROPAGATION.countSolutions(board, limit, context);
+        }
+        return new Matrix(board, context).search(0, limit);
+    }
+
+    /**
+     * The exact-cover matrix of one board. Nodes are stored as indexes into
+     * parallel arrays; node 0 is the root and nodes 1..columns are the headers.
+     */
+    private static class Matrix {
+
+        private final int size;
+        private final ConstraintSet rules;
+        private final SearchContext context;
+        private int[] left, right, up, down, column, count;
+        /** Square (row * size + col) and number of the placement a node belongs to. */
+        private int[] cellOf, numberOf;
+        /** Nodes of the placements chosen so far, one per level of the search. */
+        private int[] solution;
+        private int depth;
+
+        /**
+         * Build the matrix for the empty squares of the given board.
+         *
+         * @param board The board to be modelled.
+         * @param context The run the search belongs to.
+         */
+        Matrix(Board board, SearchContext context) {
+            this.size = board.size();
+            this.rules = board.getConstraints();
+            this.context = context;
+            int cells = size * size;
+            /*constraint index -> column header, or 0 if the board already satisfies it*/
+            int[] header = new int[cells + rules.unitCount() * size];
+            boolean[] satisfied = new boolean[header.length];
+            int links = 0;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int num = board.getElement(row, col);
+                    if (num == 0) {
+                        links += Integer.bitCount(board.candidates(row, col))
+                                * (1 + rules.unitsOf(row * size + col).length);
+                    } else if (num <= size) {
+                        int[] constraints = constraints(row * size + col, num);
+                        for (int i = 0; i < constraints.length; i++) {
+                            satisfied[constraints[i]] = true;
+                        }
+                    }
+                }
+            }
+            int headers = 0;
+            for (int i = 0; i < header.length; i++) {
+                if (!satisfied[i]) {
+                    header[i] = ++headers;
+                }
+            }
+            int nodes = 1 + headers + links;
+            left = new int[nodes];
+            right = new int[nodes];
+            up = new int[nodes];
+            down = new int[nodes];
+            column = new int[nodes];
+            count = new int[headers + 1];
+            cellOf = new int[nodes];
+            numberOf = new int[nodes];
+            solution = new int[cells];
+            for (int h = 0; h <= headers; h++) {
+                left[h] = h == 0 ? headers : h - 1;
+                right[h] = h == headers ? 0 : h + 1;
+                up[h] = h;
+                down[h] = h;
+                column[h] = h;
+            }
+            int next = headers + 1;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    if (board.getElement(row, col) != 0) {
+                        continue;
+                    }
+                    int mask = board.candidates(row, col);
+                    for (int num = 1; num <= size; num++) {
+                        if ((mask & (1 << num)) == 0) {
+                            continue;
+                        }
+                        int[] constraints = constraints(row * size + col, num);
+                        int first = next;
+                        for (int i = 0; i < constraints.length; i++, next++) {
+                            int h = header[constraints[i]];
+                            column[next] = h;
+                            cellOf[next] = row * size + col;
+                            numberOf[next] = num;
+                            up[next] = up[h];
+                            down[next] = h;
+                            down[up[h]] = next;
+                            up[h] = next;
+                            count[h]++;
+                            left[next] = next == first ? first + constraints.length - 1 : next - 1;
+                            right[next] = next == first + constraints.length - 1 ? first : next + 1;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return the constraints satisfied by placing num in a square: the
+         * square itself, then num in each of its units.
+         */
+        private int[] constraints(int cell, int num) {
+            int[] units = rules.unitsOf(cell);
+            int[] constraints = new int[1 + units.length];
+            constraints[0] = cell;
+            for (int i = 0; i < units.length; i++) {
+                constraints[1 + i] = size * size + units[i] * size + num - 1;
+            }
+            return constraints;
+        }
+
+        /**
+         * Algorithm X: cover the column with the fewest rows and try each of them.
+         * The search stops with the matrix left covered as soon as limit solutions
+         * are found, so the last of them can be applied.
+         *
+         * @param k The number of placements chosen so far.
+         * @param limit The number of solutions after which the search stops.
+         * @return Returns the number of exact covers found, at most limit.
+         */
+        int search(int k, int limit) {
+            context.checkpoint();
+            if (right[0] == 0) {
+                depth = k;
+                return 1;
+            }
+            int c = right[0];
+            for (int h = right[c]; h != 0 && count[c] > 0; h = right[h]) {
+                if (count[h] < count[c]) {
+                    c = h;
+                }
+            }
+            if (count[c] == 0) {
+                return 0;
+            }
+            int found = 0;
+            cover(c);
+            for (int r = down[c]; r != c; r = down[r]) {
+                solution[k] = r;
+                for (int j = right[r]; j != r; j = right[j]) {
+                    cover(column[j]);
+                }
+                context.ruleCheck();
+                int below = search(k + 1, limit - found);
+                if (below == 0) {
+                    context.backtrack();
+                }
+                found += below;
+                if (found >= limit) {
+                    return found;
+                }
+                for (int j = left[r]; j != r; j = left[j]) {
+                    uncover(column[j]);
+                }
+            }
+            uncover(c);
+            return found;
+        }
+
+        private void cover(int c) {
+            right[left[c]] = right[c];
+            left[right[c]] = left[c];
+            for (int i = down[c]; i != c; i = down[i]) {
+                for (int j = right[i]; j != i; j = right[j]) {
+                    down[up[j]] = down[j];
+                    up[down[j]] = up[j];
+                    count[column[j]]--;
+                }
+            }
+        }
+
+        private void uncover(int c) {
+            for (int i = up[c]; i != c; i = up[i]) {
+                for (int j = left[i]; j != i; j = left[j]) {
+                    count[column[j]]++;
+                    down[up[j]] = j;
+                    up[down[j]] = j;
+                }
+            }
+            right[left[c]] = c;
+            left[right[c]] = c;
+        }
+
+        /**
+         * Write the placements of the last successful search into the board.
+         *
+         * @param board The board that was modelled.
+         */
+        void apply(Board board) {
+            for (int k = 0; k < depth; k++) {
+                int node = solution[k];
+                board.setElement(cellOf[node] / size, cellOf[node] % size, numberOf[node]);
+            }
+        }
+    }
+}
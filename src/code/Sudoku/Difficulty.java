@@ -0,0 +1,17 @@
+package code.Sudoku;
+
+/**
+ * Difficulty levels of a puzzle, named after the hardest technique it needs.
+ *
+ * @see DifficultyRater
+ */
+enum Difficulty {
+    /** Singles only. */
+    EASY,
+    /** Pairs and intersections of a sub-grid with a line. */
+    MEDIUM,
+    /** Triples and X-Wings. */
+    HARD,
+    /** None of the techniques is enough; some guessing is needed. */
+    EXPERT
+}
@@ -0,0 +1,443 @@
+package code.Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Rates a puzzle by solving it the way a person would. The techniques are
+ * tried in the order of {@link Technique}, and after every step the search
+ * goes back to the easiest one, so each technique is only used when all the
+ * easier ones are stuck. The rating is the hardest technique used and the
+ * sum of the weights of every use.
+ * <p>
+ * Candidates are kept as one bitmask per square, and the units of the last
+ * board size are cached, so a rater is cheap to reuse but must not be
+ * shared between threads.
+ */
+class DifficultyRater {
+
+    /**
+     * Outcome of rating one puzzle.
+     */
+    static class Rating {
+
+        private final Technique hardest;
+        private final int score;
+        private final boolean solved;
+
+        Rating(Technique hardest, int score, boolean solved) {
+            this.hardest = hardest;
+            this.score = score;
+            this.solved = solved;
+        }
+
+        /**
+         * Returns the hardest technique that was needed.
+         *
+         * @return The technique, or null if the board was already full.
+         */
+        Technique hardest() {
+            return hardest;
+        }
+
+        /**
+         * Returns the sum of the weights of every technique used.
+         *
+         * @return The score; higher is harder.
+         */
+        int score() {
+            return score;
+        }
+
+        /**
+         * Returns whether the techniques were enough to fill the board.
+         *
+         * @return Whether the board was solved without guessing.
+         */
+        boolean solved() {
+            return solved;
+        }
+
+        /**
+         * Returns the difficulty level of the puzzle.
+         *
+         * @return EXPERT if the techniques got stuck, else the level of the hardest one.
+         */
+        Difficulty difficulty() {
+            if (!solved) {
+                return Difficulty.EXPERT;
+            }
+            return hardest == null ? Difficulty.EASY : hardest.difficulty();
+        }
+
+        @Override
+        public String toString() {
+            return difficulty() + " (" + (solved ? hardest : "stuck after " + hardest) + ", score " + score + ")";
+        }
+    }
+
+    private int size;
+    /** Squares of every row, then every column, then every sub-grid. */
+    private int[][] units;
+    /** The row, column and sub-grid of every square, as indices into units. */
+    private int[][] unitsOf;
+    /** Squares sharing a unit with every square. */
+    private int[][] peers;
+
+    private int[] values;
+    private int[] cand;
+    private int empty;
+    private boolean broken;
+
+    /**
+     * Solve a copy of the board with the techniques and rate it.
+     *
+     * @param board The puzzle to be rated; it is not changed.
+     * @return Returns the rating of the puzzle.
+     */
+    Rating rate(Board board) {
+        if (board.size() != size) {
+            layout(board.size());
+        }
+        int all = ((1 << size) - 1) << 1;
+        values = new int[size * size];
+        cand = new int[size * size];
+        empty = size * size;
+        broken = false;
+        Arrays.fill(cand, all);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int num = board.getElement(row, col);
+                if (num > 0 && num <= size) {
+                    place(row * size + col, num);
+                }
+            }
+        }
+        Technique hardest = null;
+        int score = 0;
+        search:
+        while (empty > 0 && !broken) {
+            for (Technique technique : Technique.values()) {
+                int uses = apply(technique);
+                if (uses > 0) {
+                    score += uses * technique.weight();
+                    if (hardest == null || technique.compareTo(hardest) > 0) {
+                        hardest = technique;
+                    }
+                    continue search;
+                }
+            }
+            break;
+        }
+        return new Rating(hardest, score, empty == 0 && !broken);
+    }
+
+    /**
+     * Use the technique wherever it applies once.
+     *
+     * @return Returns the number of placements or eliminations made.
+     */
+    private int apply(Technique technique) {
+        switch (technique) {
+            case NAKED_SINGLE:
+                return nakedSingles();
+            case HIDDEN_SINGLE:
+                return hiddenSingles();
+            case POINTING_PAIR:
+                return intersections(2 * size, 3 * size);
+            case BOX_LINE:
+                return intersections(0, 2 * size);
+            case NAKED_PAIR:
+                return nakedSubsets(2);
+            case HIDDEN_PAIR:
+                return hiddenSubsets(2);
+            case NAKED_TRIPLE:
+                return nakedSubsets(3);
+            case HIDDEN_TRIPLE:
+                return hiddenSubsets(3);
+            case X_WING:
+                return xWings();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Build the unit tables of a board size.
+     */
+    private void layout(int size) {
+        Geometry geometry = Geometry.of(size);
+        this.size = size;
+        units = new int[3 * size][];
+        for (int u = 0; u < units.length; u++) {
+            units[u] = geometry.unit(u);
+        }
+        unitsOf = new int[size * size][];
+        peers = new int[size * size][];
+        for (int cell = 0; cell < size * size; cell++) {
+            unitsOf[cell] = geometry.unitsOf(cell);
+            peers[cell] = geometry.peers(cell);
+        }
+    }
+
+    /**
+     * Fill a square and remove its number from the candidates of its peers.
+     */
+    private void place(int cell, int num) {
+        values[cell] = num;
+        cand[cell] = 0;
+        empty--;
+        for (int peer : peers[cell]) {
+            cand[peer] &= ~(1 << num);
+        }
+    }
+
+    private int nakedSingles() {
+        int uses = 0;
+        for (int cell = 0; cell < cand.length; cell++) {
+            if (values[cell] == 0) {
+                if (cand[cell] == 0) {
+                    broken = true;
+                    return uses;
+                }
+                if (Integer.bitCount(cand[cell]) == 1) {
+                    place(cell, Integer.numberOfTrailingZeros(cand[cell]));
+                    uses++;
+                }
+            }
+        }
+        return uses;
+    }
+
+    private int hiddenSingles() {
+        int uses = 0;
+        for (int[] unit : units) {
+            int once = 0, twice = 0;
+            for (int cell : unit) {
+                twice |= once & cand[cell];
+                once |= cand[cell];
+            }
+            for (int single = once & ~twice; single != 0; single &= single - 1) {
+                int num = Integer.numberOfTrailingZeros(single);
+                for (int cell : unit) {
+                    if ((cand[cell] & (1 << num)) != 0) {
+                        place(cell, num);
+                        uses++;
+                        break;
+                    }
+                }
+            }
+        }
+        return uses;
+    }
+
+    /**
+     * Pointing pairs when scanning the sub-grids, box/line reductions when scanning the lines:
+     * if a number fits a unit only where it crosses another unit, it is removed
+     * from the rest of the other unit.
+     *
+     * @param from First unit to scan.
+     * @param to Unit after the last one to scan.
+     */
+    private int intersections(int from, int to) {
+        int uses = 0;
+        for (int u = from; u < to; u++) {
+            for (int num = 1; num <= size; num++) {
+                int bit = 1 << num;
+                /*the other units every position of num shares, or -1*/
+                int first = -1, second = -1;
+                boolean found = false;
+                for (int cell : units[u]) {
+                    if ((cand[cell] & bit) != 0) {
+                        int[] crossing = unitsOf[cell];
+                        int a = u < 2 * size ? crossing[2] : crossing[0];
+                        int b = u < 2 * size ? -1 : crossing[1];
+                        if (!found) {
+                            first = a;
+                            second = b;
+                            found = true;
+                        } else {
+                            first = first == a ? a : -1;
+                            second = second == b ? b : -1;
+                        }
+                    }
+                }
+                if (found && (eliminate(first, u, bit) | eliminate(second, u, bit))) {
+                    uses++;
+                }
+            }
+        }
+        return uses;
+    }
+
+    /**
+     * Remove a number from the squares of a unit that are not in another unit.
+     *
+     * @return Returns whether a candidate was removed.
+     */
+    private boolean eliminate(int target, int keep, int bit) {
+        if (target < 0) {
+            return false;
+        }
+        boolean changed = false;
+        for (int cell : units[target]) {
+            if ((cand[cell] & bit) != 0 && !contains(unitsOf[cell], keep)) {
+                cand[cell] &= ~bit;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean contains(int[] array, int value) {
+        for (int v : array) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find k squares of a unit allowing k numbers between them and remove
+     * those numbers from the other squares of the unit.
+     */
+    private int nakedSubsets(int k) {
+        int uses = 0;
+        int[] small = new int[size];
+        for (int[] unit : units) {
+            int count = 0;
+            for (int cell : unit) {
+                int bits = Integer.bitCount(cand[cell]);
+                if (bits >= 2 && bits <= k) {
+                    small[count++] = cell;
+                }
+            }
+            for (int a = 0; a < count; a++) {
+                for (int b = a + 1; b < count; b++) {
+                    if (k == 2) {
+                        uses += removeNaked(unit, cand[small[a]] | cand[small[b]], 2);
+                        continue;
+                    }
+                    for (int c = b + 1; c < count; c++) {
+                        uses += removeNaked(unit, cand[small[a]] | cand[small[b]] | cand[small[c]], 3);
+                    }
+                }
+            }
+        }
+        return uses;
+    }
+
+    private int removeNaked(int[] unit, int union, int k) {
+        if (Integer.bitCount(union) != k) {
+            return 0;
+        }
+        boolean changed = false;
+        for (int cell : unit) {
+            if (cand[cell] != 0 && (cand[cell] & ~union) != 0 && (cand[cell] & union) != 0) {
+                cand[cell] &= ~union;
+                changed = true;
+            }
+        }
+        return changed ? 1 : 0;
+    }
+
+    /**
+     * Find k numbers that fit only the same k squares of a unit and remove
+     * every other number from those squares.
+     */
+    private int hiddenSubsets(int k) {
+        int uses = 0;
+        int[] positions = new int[size + 1];
+        int[] nums = new int[size];
+        for (int[] unit : units) {
+            int count = 0;
+            for (int num = 1; num <= size; num++) {
+                int mask = 0;
+                for (int i = 0; i < size; i++) {
+                    if ((cand[unit[i]] & (1 << num)) != 0) {
+                        mask |= 1 << i;
+                    }
+                }
+                positions[num] = mask;
+                int bits = Integer.bitCount(mask);
+                if (bits >= 2 && bits <= k) {
+                    nums[count++] = num;
+                }
+            }
+            for (int a = 0; a < count; a++) {
+                for (int b = a + 1; b < count; b++) {
+                    if (k == 2) {
+                        uses += keepHidden(unit, positions, nums[a], nums[b], 0);
+                        continue;
+                    }
+                    for (int c = b + 1; c < count; c++) {
+                        uses += keepHidden(unit, positions, nums[a], nums[b], nums[c]);
+                    }
+                }
+            }
+        }
+        return uses;
+    }
+
+    private int keepHidden(int[] unit, int[] positions, int a, int b, int c) {
+        int where = positions[a] | positions[b] | positions[c];
+        int keep = 1 << a | 1 << b | (c > 0 ? 1 << c : 0);
+        if (Integer.bitCount(where) != Integer.bitCount(keep)) {
+            return 0;
+        }
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            if ((where & (1 << i)) != 0 && (cand[unit[i]] & ~keep) != 0) {
+                cand[unit[i]] &= keep;
+                changed = true;
+            }
+        }
+        return changed ? 1 : 0;
+    }
+
+    /**
+     * Find a number that fits two rows in the same two columns only, and
+     * remove it from the rest of those columns; then the same with rows and
+     * columns swapped.
+     */
+    private int xWings() {
+        int uses = 0;
+        int[] lines = new int[size];
+        for (int num = 1; num <= size; num++) {
+            int bit = 1 << num;
+            for (int base = 0; base <= size; base += size) {
+                int cover = size - base;
+                for (int line = 0; line < size; line++) {
+                    int mask = 0;
+                    for (int i = 0; i < size; i++) {
+                        if ((cand[units[base + line][i]] & bit) != 0) {
+                            mask |= 1 << i;
+                        }
+                    }
+                    lines[line] = Integer.bitCount(mask) == 2 ? mask : 0;
+                }
+                for (int a = 0; a < size; a++) {
+                    for (int b = a + 1; b < size && lines[a] != 0; b++) {
+                        if (lines[a] != lines[b]) {
+                            continue;
+                        }
+                        boolean changed = false;
+                        for (int m = lines[a]; m != 0; m &= m - 1) {
+                            int[] crossing = units[cover + Integer.numberOfTrailingZeros(m)];
+                            for (int i = 0; i < size; i++) {
+                                if (i != a && i != b && (cand[crossing[i]] & bit) != 0) {
+                                    cand[crossing[i]] &= ~bit;
+                                    changed = true;
+                                }
+                            }
+                        }
+                        if (changed) {
+                            uses++;
+                        }
+                    }
+                }
+            }
+        }
+        return uses;
+    }
+}
@@ -0,0 +1,183 @@
+package code.Sudoku;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The solution of the puzzle of one game, computed once in the background
+ * when the game starts. Once it is known, placements are checked against it
+ * with an array lookup, and Solve copies it instead of searching again.
+ * <p>
+ * A wrong number only makes the board unsolvable if the puzzle has a single
+ * solution, so that is checked as well; for a puzzle with several
+ * solutions, e.g. one received over the network, and while the background
+ * solve is still running, the board is asked instead.
+ * <p>
+ * The background solve is one propagation search that counts up to two
+ * solutions and keeps the first. It has a node and time budget, and is
+ * cancelled when the game is replaced; a solve that stops early leaves
+ * the solution unknown, so the board is always asked.
+ */
+class GameSolution {
+
+    /** Search nodes allowed to the background solve. */
+    static final long MAX_NODES = 1000000;
+
+    /** Time allowed to the background solve, in milliseconds. */
+    static final long TIMEOUT_MILLIS = 10000;
+
+    private final int size;
+    private final SearchContext context;
+    private final Future<?> task;
+    /** The solution, or null if the puzzle has none; only read once ready is set. */
+    private byte[] solution;
+    private boolean unique;
+    private volatile boolean ready;
+
+    /**
+     * Start solving the puzzle of a new game in the background, see {@link Solver#submit}.
+     *
+     * @param puzzle The board as the game starts; it is not changed, later moves do not matter.
+     */
+    GameSolution(Board puzzle) {
+        size = puzzle.size();
+        Board clone = puzzle.cloneBoard();
+        context = new SearchContext(MAX_NODES, TIMEOUT_MILLIS);
+        task = Solver.submit(() -> {
+            byte[] first = new byte[size * size];
+            try {
+                int found = new PropagationEngine().countSolutions(clone, 2, context, first);
+                unique = found == 1;
+                solution = found > 0 ? first : null;
+                ready = true;
+            } catch (CancellationException e) {
+                /*out of budget or cancelled: the solution stays unknown*/
+            } finally {
+                context.finish();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Stop the background solve, e.g. because a new game replaces this one.
+     * If it has not found the solution yet, it never will.
+     */
+    void cancel() {
+        context.cancel();
+        task.cancel(false);
+    }
+
+    /**
+     * Returns whether the solution has been computed.
+     *
+     * @return True once the background solve is over.
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Wait for the background solve to end, with or without the solution.
+     *
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    void await() throws InterruptedException {
+        try {
+            task.get();
+        } catch (CancellationException e) {
+            /*cancelled before it started*/
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number that belongs in a square.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @return The number of the solution, or 0 if it is not known yet or the puzzle has no solution.
+     */
+    int numberAt(int row, int col) {
+        return ready && solution != null ? solution[row * size + col] : 0;
+    }
+
+    /**
+     * Returns whether placing a number surely makes the puzzle unsolvable: the
+     * puzzle has a single solution and the number is not the one in it.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @param num The number placed.
+     * @return True if the placement is known to be wrong.
+     */
+    boolean isWrong(int row, int col, int num) {
+        return ready && unique && solution != null && num != 0 && solution[row * size + col] != num;
+    }
+
+    /**
+     * Returns whether the board of this game can still be solved. Without a
+     * search if the solution is known and every number on the board agrees
+     * with it, or if the solution is the only one.
+     *
+     * @param board The board of this game; it is not changed.
+     * @return True if the board can be completed.
+     */
+    boolean isSolvable(Board board) {
+        if (ready && board.size() == size) {
+            if (solution == null) {
+                return false;
+            }
+            if (agrees(board)) {
+                return true;
+            }
+            if (unique) {
+                return false;
+            }
+        }
+        return board.isSolvable();
+    }
+
+    /**
+     * Fill the board of this game with the solution. Once the solution is
+     * known there is no search, unless a number on the board disagrees with it
+     * and the puzzle has other solutions.
+     *
+     * @param board The board of this game; it is only changed if it is solved.
+     * @return Returns whether the board was solved.
+     */
+    boolean solve(Board board) {
+        if (ready && board.size() == size) {
+            if (solution == null) {
+                return false;
+            }
+            if (agrees(board)) {
+                for (int cell = 0; cell < solution.length; cell++) {
+                    if (board.getElement(cell / size, cell % size) == 0) {
+                        board.setElement(cell / size, cell % size, solution[cell]);
+                    }
+                }
+                return true;
+            }
+            if (unique) {
+                return false;
+            }
+        }
+        return board.solveSudoku();
+    }
+
+    /**
+     * Returns whether every number on the board is the one of the solution.
+     */
+    private boolean agrees(Board board) {
+        for (int cell = 0; cell < solution.length; cell++) {
+            int num = board.getElement(cell / size, cell % size);
+            if (num != 0 && num != solution[cell]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,272 @@
+package code.Sudoku;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Generates puzzles with exactly one solution. A random solved grid is
+ * built first; givens are then removed in random order as long as the
+ * solution stays unique, until the target number of givens is reached.
+ * Every square is tried at most once and every uniqueness check has a
+ * node budget, so the work done is bounded by size * size budgeted checks.
+ * <p>
+ * For a requested difficulty, a removal that makes the puzzle rate harder
+ * than asked is undone as well, and whole puzzles are generated again until
+ * one rates exactly as asked or the attempts run out.
+ * <p>
+ * The work is counted in the {@link SolverMetrics} of the generator: the
+ * searches of every uniqueness check, the checks that ran out of budget,
+ * and as retries every grid drawn again and every puzzle generated again.
+ * <p>
+ * The rules of the board are kept: on a variant board, e.g. one with
+ * diagonals or cages, the solved grid, every uniqueness check and the
+ * puzzle handed back all follow its {@link ConstraintSet}.
+ */
+class Generator {
+
+    /** Search nodes allowed per uniqueness check; a removal needing more is undone. */
+    private static final long CHECK_NODES = 10000;
+
+    /** Puzzles generated for a requested difficulty before the closest one is kept. */
+    private static final int MAX_ATTEMPTS = 32;
+
+    private final Random random;
+    private final SolverMetrics metrics;
+    private final DifficultyRater rater = new DifficultyRater();
+
+    /**
+     * Create a generator with a random seed.
+     */
+    Generator() {
+        this(new Random());
+    }
+
+    /**
+     * Create a generator drawing from the given source, e.g. a seeded one for reproducible puzzles.
+     *
+     * @param random Source of randomness.
+     */
+    Generator(Random random) {
+        this(random, new SolverMetrics());
+    }
+
+    /**
+     * Create a generator drawing from the given source and counting its work in the given metrics.
+     *
+     * @param random Source of randomness.
+     * @param metrics The metrics of the solver call the generator runs for.
+     */
+    Generator(Random random, SolverMetrics metrics) {
+        this.random = random;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the number of givens aimed for on a board of the given size.
+     *
+     * @param size The size of the board.
+     * @return The target number of givens.
+     */
+    static int defaultClues(int size) {
+        switch (size) {
+            case 4:
+                return 5;
+            case 9:
+                return 28;
+            case 16:
+                return 112;
+            case 25:
+                return 320;
+            default:
+                return size * size / 2;
+        }
+    }
+
+    /**
+     * Reset the board and fill it with a new puzzle.
+     *
+     * @param board The board to be filled; its size and rules are kept.
+     * @param clues The number of givens to aim for. Fewer givens may be impossible
+     *              without losing uniqueness, in which case more are kept.
+     */
+    void generate(Board board, int clues) {
+        copyGivens(carve(board.getConstraints(), clues, Difficulty.EXPERT), board);
+    }
+
+    /**
+     * Reset the board and fill it with a new puzzle of the given difficulty.
+     * Easy puzzles keep the default number of givens; harder ones on boards up
+     * to 9x9 lose as many givens as uniqueness and the difficulty allow. If no
+     * attempt rates exactly as asked, the closest puzzle is used.
+     *
+     * @param board The board to be filled; its size and rules are kept.
+     * @param difficulty The difficulty to aim for.
+     */
+    void generate(Board board, Difficulty difficulty) {
+        int size = board.size();
+        int clues = difficulty == Difficulty.EASY || size > 9 ? defaultClues(size) : 0;
+        Board closest = null;
+        int distance = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && distance > 0; attempt++) {
+            if (attempt > 0) {
+                metrics.retry();
+            }
+            Board puzzle = carve(board.getConstraints(), clues, difficulty);
+            int d = Math.abs(rater.rate(puzzle).difficulty().ordinal() - difficulty.ordinal());
+            if (d < distance) {
+                closest = puzzle;
+                distance = d;
+            }
+        }
+        copyGivens(closest, board);
+    }
+
+    /**
+     * Build a solved grid and remove givens from it in random order.
+     *
+     * @param rules The rules of the board.
+     * @param clues The number of givens to aim for.
+     * @param hardest Removals that make the puzzle rate harder than this are undone.
+     * @return The puzzle, with a unique solution under the rules.
+     */
+    private Board carve(ConstraintSet rules, int clues, Difficulty hardest) {
+        int size = rules.size();
+        Board puzzle = solvedGrid(rules);
+        int[] order = shuffledCells(size * size);
+        int left = size * size;
+        for (int i = 0; i < order.length && left > clues; i++) {
+            int row = order[i] / size, col = order[i] % size;
+            int num = puzzle.getElement(row, col);
+            puzzle.deleteElement(row, col);
+            if (isUnique(puzzle) && (hardest == Difficulty.EXPERT
+                    || rater.rate(puzzle).difficulty().compareTo(hardest) <= 0)) {
+                left--;
+            } else {
+                puzzle.setElement(row, col, num);
+            }
+        }
+        return puzzle;
+    }
+
+    /**
+     * Reset the board to the rules of the puzzle and copy its numbers into it as givens.
+     */
+    private static void copyGivens(Board puzzle, Board board) {
+        int size = board.size();
+        board.reset(size);
+        board.setConstraints(puzzle.getConstraints());
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (puzzle.getElement(row, col) != 0) {
+                    board.setGiven(row, col, puzzle.getElement(row, col));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the board has exactly one solution, treating a check
+     * that runs out of budget as not unique.
+     */
+    private boolean isUnique(Board puzzle) {
+        SearchContext context = new SearchContext(metrics, CHECK_NODES, 0);
+        try {
+            return puzzle.getEngine().countSolutions(puzzle, 2, context) == 1;
+        } catch (CancellationException e) {
+            metrics.budgetStop();
+            return false;
+        } finally {
+            context.finish();
+        }
+    }
+
+    /**
+     * Build a random solved grid. On a classic board the sub-grids on the
+     * diagonal share no row or column, so they are filled with random
+     * permutations and the rest is solved. On 4x4 boards two diagonal sub-grids
+     * can rule each other out, in which case they are drawn again.
+     * <p>
+     * Variant rules may rule out such permutations, so there random squares
+     * get random numbers that fit them instead. When the rest cannot be solved
+     * the grid is drawn again with half as many seeded squares, down to none.
+     *
+     * @param rules The rules of the board.
+     * @return A board with every square filled.
+     * @throws IllegalArgumentException If no grid follows the rules.
+     */
+    private Board solvedGrid(ConstraintSet rules) {
+        int size = rules.size();
+        int seeds = size;
+        while (true) {
+            Board grid = new Board(size);
+            grid.setConstraints(rules);
+            /*the pool already generates on several threads, so every check stays sequential*/
+            grid.setEngine(SolverEngine.PROPAGATION);
+            if (rules.isClassic()) {
+                int boxSize = grid.boxSize();
+                for (int box = 0; box < boxSize; box++) {
+                    int[] numbers = shuffledCells(size);
+                    for (int i = 0; i < size; i++) {
+                        grid.setElement(box * boxSize + i / boxSize, box * boxSize + i % boxSize, numbers[i] + 1);
+                    }
+                }
+            } else {
+                seed(grid, seeds);
+            }
+            boolean solved;
+            SearchContext context = new SearchContext(metrics, Long.MAX_VALUE, 0);
+            try {
+                solved = grid.getEngine().solve(grid, context);
+            } finally {
+                context.finish();
+            }
+            if (solved) {
+                return grid;
+            }
+            if (!rules.isClassic()) {
+                if (seeds == 0) {
+                    throw new IllegalArgumentException("no grid follows " + rules);
+                }
+                seeds /= 2;
+            }
+            metrics.retry();
+        }
+    }
+
+    /**
+     * Write a random fitting number into each of the given number of random squares.
+     * A square nothing fits any more is left empty.
+     */
+    private void seed(Board grid, int seeds) {
+        int size = grid.size();
+        int[] order = shuffledCells(size * size);
+        for (int i = 0; i < seeds; i++) {
+            int row = order[i] / size, col = order[i] % size;
+            int mask = grid.candidates(row, col);
+            if (mask != 0) {
+                int pick = random.nextInt(Integer.bitCount(mask));
+                while (pick-- > 0) {
+                    mask &= mask - 1;
+                }
+                grid.setElement(row, col, Integer.numberOfTrailingZeros(mask));
+            }
+        }
+    }
+
+    /**
+     * Returns the numbers 0 to count - 1 in random order.
+     */
+    private int[] shuffledCells(int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,148 @@
+package code.Sudoku;
+
+/**
+ * The layout of a classic board of one size, as integer lookup tables: the
+ * sub-grid of every square, the squares of every unit, the units of every
+ * square and its peers. Boards (through the classic {@link ConstraintSet}),
+ * the engines, the rater, hints and the {@link BatchValidator} look squares
+ * up here instead of working the sub-grids out with divisions or square
+ * roots in their loops; {@link BoardPanel} takes its sub-grid size from it.
+ * Boards received over the network are checked by the board built from
+ * them, so through the same tables.
+ * <p>
+ * Units are numbered as everywhere else: the rows, then the columns, then
+ * the sub-grids, each counted left to right and top to bottom. A geometry
+ * is built once per size on first use and shared; its arrays must not be
+ * changed.
+ */
+final class Geometry {
+
+    /** Geometries by board size, built on first use. */
+    private static final Geometry[] SIZES = new Geometry[32];
+
+    private final int size;
+    private final int boxSize;
+    /** Sub-grid of every square, from 0 to size - 1. */
+    private final int[] boxOf;
+    /** Squares of every unit. */
+    private final int[][] units;
+    /** Row, column and sub-grid of every square, as indices into units. */
+    private final int[][] unitsOf;
+    /** Squares sharing a unit with every square, without the square itself. */
+    private final int[][] peers;
+
+    private Geometry(int size) {
+        int boxSize = 1;
+        while ((boxSize + 1) * (boxSize + 1) <= size) {
+            boxSize++;
+        }
+        if (boxSize * boxSize != size) {
+            throw new IllegalArgumentException("size " + size + " is not a square");
+        }
+        this.size = size;
+        this.boxSize = boxSize;
+        int cells = size * size;
+        boxOf = new int[cells];
+        units = new int[3 * size][size];
+        unitsOf = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size, col = cell % size;
+            boxOf[cell] = row / boxSize * boxSize + col / boxSize;
+            int i = row % boxSize * boxSize + col % boxSize;
+            units[row][col] = cell;
+            units[size + col][row] = cell;
+            units[2 * size + boxOf[cell]][i] = cell;
+            unitsOf[cell] = new int[]{row, size + col, 2 * size + boxOf[cell]};
+        }
+        peers = new int[cells][];
+        boolean[] seen = new boolean[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int[] found = new int[3 * (size - 1) - 2 * (boxSize - 1)];
+            int count = 0;
+            seen[cell] = true;
+            for (int unit : unitsOf[cell]) {
+                for (int peer : units[unit]) {
+                    if (!seen[peer]) {
+                        seen[peer] = true;
+                        found[count++] = peer;
+                    }
+                }
+            }
+            for (int peer : found) {
+                seen[peer] = false;
+            }
+            seen[cell] = false;
+            peers[cell] = found;
+        }
+    }
+
+    /**
+     * Returns the geometry of a board size.
+     *
+     * @param size The size of the board, a square number.
+     * @return The shared geometry of that size.
+     * @throws IllegalArgumentException If the size is not a square.
+     */
+    static Geometry of(int size) {
+        synchronized (SIZES) {
+            if (SIZES[size] == null) {
+                SIZES[size] = new Geometry(size);
+            }
+            return SIZES[size];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of rows and columns of a sub-grid.
+     *
+     * @return The square root of the size.
+     */
+    int boxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the sub-grid of a square.
+     *
+     * @param cell The square, as row * size + col.
+     * @return The sub-grid, counted left to right and top to bottom.
+     */
+    int boxOf(int cell) {
+        return boxOf[cell];
+    }
+
+    /**
+     * Returns the squares of a unit. The array is shared and must not be changed.
+     *
+     * @param unit The index of the unit: a row, size + a column, or 2 * size + a sub-grid.
+     * @return The squares as row * size + col, in row-major order.
+     */
+    int[] unit(int unit) {
+        return units[unit];
+    }
+
+    /**
+     * Returns the row, column and sub-grid of a square. The array is shared and must not be changed.
+     *
+     * @param cell The square, as row * size + col.
+     * @return The indexes of its three units.
+     */
+    int[] unitsOf(int cell) {
+        return unitsOf[cell];
+    }
+
+    /**
+     * Returns the squares that share a row, column or sub-grid with a square.
+     * The array is shared and must not be changed.
+     *
+     * @param cell The square, as row * size + col.
+     * @return The peers as row * size + col, each once.
+     */
+    int[] peers(int cell) {
+        return peers[cell];
+    }
+}
@@ -0,0 +1,121 @@
+package code.Sudoku;
+
+/**
+ * Finds the next number that can be placed by logic alone, without
+ * searching. The candidates of every square come from the occupancy masks
+ * that the board keeps up to date on every change, so a hint costs one
+ * pass over the squares and the units of the board.
+ */
+class HintEngine {
+
+    /**
+     * A number to place and the reason it belongs there.
+     */
+    static class Hint {
+
+        private final int row, col, number;
+        private final Technique technique;
+        private final String unit;
+
+        Hint(int row, int col, int number, Technique technique, String unit) {
+            this.row = row;
+            this.col = col;
+            this.number = number;
+            this.technique = technique;
+            this.unit = unit;
+        }
+
+        int row() {
+            return row;
+        }
+
+        int col() {
+            return col;
+        }
+
+        int number() {
+            return number;
+        }
+
+        Technique technique() {
+            return technique;
+        }
+
+        /**
+         * Returns the unit a hidden single was found in.
+         *
+         * @return Returns "row", "column" or "box", or null for a naked single.
+         */
+        String unit() {
+            return unit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d at row %d, column %d (%s%s)", number, row + 1, col + 1,
+                    technique, unit == null ? "" : " in " + unit);
+        }
+    }
+
+    /**
+     * Returns the easiest placement that follows from the numbers on the board.
+     * Naked singles are preferred, then hidden singles in the sub-grids, rows
+     * and columns.
+     *
+     * @param board The board to be examined; it is not changed.
+     * @return Returns the hint, or null if no single is left or the board has
+     * a square without any allowed number.
+     */
+    Hint next(Board board) {
+        int size = board.size();
+        int[] candidates = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.getElement(row, col) == 0) {
+                    int mask = board.candidates(row, col);
+                    if (mask == 0) {
+                        return null;
+                    }
+                    if (Integer.bitCount(mask) == 1) {
+                        return new Hint(row, col, Integer.numberOfTrailingZeros(mask), Technique.NAKED_SINGLE, null);
+                    }
+                    candidates[row * size + col] = mask;
+                }
+            }
+        }
+        Geometry geometry = Geometry.of(size);
+        for (int kind = 0; kind < 3; kind++) {
+            for (int u = 0; u < size; u++) {
+                /*sub-grids first, then rows, then columns*/
+                int[] unit = geometry.unit((kind + 2) % 3 * size + u);
+                Hint hint = hiddenSingle(candidates, unit, size, kind == 0 ? "box" : kind == 1 ? "row" : "column");
+                if (hint != null) {
+                    return hint;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a number that fits only one square of the unit, or null.
+     */
+    private static Hint hiddenSingle(int[] candidates, int[] unit, int size, String name) {
+        int once = 0, twice = 0;
+        for (int cell : unit) {
+            twice |= once & candidates[cell];
+            once |= candidates[cell];
+        }
+        int single = once & ~twice;
+        if (single == 0) {
+            return null;
+        }
+        int number = Integer.numberOfTrailingZeros(single);
+        for (int cell : unit) {
+            if ((candidates[cell] & (1 << number)) != 0) {
+                return new Hint(cell / size, cell % size, number, Technique.HIDDEN_SINGLE, name);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,228 @@
+package code.Sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves a board on a fork/join pool. The first few levels of the search
+ * tree are split into tasks, one per allowed number of the most constrained
+ * square, and each task works on its own clone of the board. Below that a
+ * sequential engine finishes the search. The first task to find a solution
+ * cancels all the others. Each leaf search runs under its own child of
+ * the caller's context, so the caller's budget covers every task.
+ */
+class ParallelEngine implements SolverEngine {
+
+    /** Pool shared by every parallel solve. */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final SolverEngine leaf;
+    private final int depth;
+
+    /**
+     * Create a parallel engine.
+     *
+     * @param leaf The engine that searches below the split levels.
+     * @param depth The number of levels split into tasks.
+     */
+    ParallelEngine(SolverEngine leaf, int depth) {
+        this.leaf = leaf;
+        this.depth = depth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean solve(Board board, SearchContext context) {
+        SearchContext race = new SearchContext(context);
+        Board solved = POOL.invoke(new Branch(board.cloneBoard(), depth, race));
+        context.checkpoint();
+        if (solved == null) {
+            return false;
+        }
+        for (int row = 0; row < board.size(); row++) {
+            for (int col = 0; col < board.size(); col++) {
+                if (board.getElement(row, col) == 0) {
+                    board.setElement(row, col, solved.getElement(row, col));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countSolutions(Board board, int limit, SearchContext context) {
+        SearchContext race = new SearchContext(context);
+        AtomicInteger found = new AtomicInteger();
+        POOL.invoke(new Count(board.cloneBoard(), depth, limit, found, race));
+        context.checkpoint();
+        return Math.min(found.get(), limit);
+    }
+
+    /**
+     * Returns the empty square with the fewest allowed numbers as row * size + col,
+     * or -1 if the board is full.
+     */
+    private static int mostConstrained(Board board) {
+        int best = -1, fewest = Integer.MAX_VALUE;
+        for (int cell = 0; cell < board.size() * board.size(); cell++) {
+            int row = cell / board.size(), col = cell % board.size();
+            if (board.getElement(row, col) == 0) {
+                int count = Integer.bitCount(board.candidates(row, col));
+                if (count < fewest) {
+                    best = cell;
+                    fewest = count;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a clone of the board for every allowed number of the given square,
+     * with that number placed.
+     */
+    private static List<Board> split(Board board, int cell) {
+        int row = cell / board.size(), col = cell % board.size();
+        int mask = board.candidates(row, col);
+        List<Board> copies = new ArrayList<>();
+        for (int num = 1; num <= board.size(); num++) {
+            if ((mask & (1 << num)) != 0) {
+                Board copy = board.cloneBoard();
+                copy.setElement(row, col, num);
+                copies.add(copy);
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * One subtree of the search, rooted at a board owned by the task.
+     */
+    @SuppressWarnings("serial")
+    private class Branch extends RecursiveTask<Board> {
+
+        private final Board board;
+        private final int depth;
+        private final SearchContext race;
+
+        Branch(Board board, int depth, SearchContext race) {
+            this.board = board;
+            this.depth = depth;
+            this.race = race;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return Returns the solved board, or null if this subtree has no
+         * solution or the race was already won.
+         */
+        @Override
+        protected Board compute() {
+            if (race.isCancelled()) {
+                return null;
+            }
+            int cell = mostConstrained(board);
+            if (depth == 0 || cell < 0) {
+                return solveLeaf();
+            }
+            List<Branch> branches = new ArrayList<>();
+            for (Board copy : split(board, cell)) {
+                Branch branch = new Branch(copy, depth - 1, race);
+                branch.fork();
+                branches.add(branch);
+            }
+            Board solved = null;
+            for (Branch branch : branches) {
+                if (solved != null) {
+                    branch.cancel(false);
+                    continue;
+                }
+                try {
+                    solved = branch.join();
+                } catch (CancellationException e) {
+                    // lost the race before it started
+                }
+            }
+            return solved;
+        }
+
+        /**
+         * Finish this subtree with the sequential engine.
+         */
+        private Board solveLeaf() {
+            SearchContext context = new SearchContext(race);
+            try {
+                if (leaf.solve(board, context)) {
+                    race.cancel();
+                    return board;
+                }
+            } catch (CancellationException e) {
+                // another task found a solution first
+            } finally {
+                context.finish();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One subtree of a solution count, adding what it finds to a shared total.
+     */
+    @SuppressWarnings("serial")
+    private class Count extends RecursiveAction {
+
+        private final Board board;
+        private final int depth;
+        private final int limit;
+        private final AtomicInteger found;
+        private final SearchContext race;
+
+        Count(Board board, int depth, int limit, AtomicInteger found, SearchContext race) {
+            this.board = board;
+            this.depth = depth;
+            this.limit = limit;
+            this.found = found;
+            this.race = race;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (race.isCancelled()) {
+                return;
+            }
+            int cell = mostConstrained(board);
+            if (depth == 0 || cell < 0) {
+                SearchContext context = new SearchContext(race);
+                try {
+                    if (found.addAndGet(leaf.countSolutions(board, limit, context)) >= limit) {
+                        race.cancel();
+                    }
+                } catch (CancellationException e) {
+                    // the limit was reached by other tasks
+                } finally {
+                    context.finish();
+                }
+                return;
+            }
+            List<Count> counts = new ArrayList<>();
+            for (Board copy : split(board, cell)) {
+                counts.add(new Count(copy, depth - 1, limit, found, race));
+            }
+            invokeAll(counts);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package code.Sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Races several engines on clones of the board and keeps the first answer.
+ * A hard puzzle often stalls one heuristic and falls quickly to another, so
+ * the time of the race is that of the best engine for the puzzle. A proof
+ * that there is no solution is an answer too, as every engine is complete.
+ * <p>
+ * The racers get child contexts of the caller's context, so the caller's
+ * budget covers all of them; the losers are cancelled as soon as one wins.
+ * They run on a pool of their own with one daemon thread per racer, so a
+ * race started from a task of another pool never waits for a thread of
+ * that pool; races started at the same time queue for the racer threads.
+ * <p>
+ * Counting visits the whole tree whatever the order of the numbers, so
+ * engines that only differ in that order are raced once when counting.
+ */
+class PortfolioEngine implements SolverEngine {
+
+    private final SolverEngine[] engines;
+    /** The engines with a different way of counting, for countSolutions. */
+    private final SolverEngine[] counters;
+    private final ExecutorService pool;
+
+    /**
+     * Create a portfolio racing the given engines.
+     *
+     * @param engines The engines; each one must be complete.
+     */
+    PortfolioEngine(SolverEngine... engines) {
+        this.engines = engines;
+        this.counters = Arrays.stream(engines)
+                .map(engine -> engine instanceof RandomRestarts ? PROPAGATION : engine)
+                .distinct()
+                .toArray(SolverEngine[]::new);
+        this.pool = createPool(engines.length);
+    }
+
+    private static ExecutorService createPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "portfolio-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean solve(Board board, SearchContext context) {
+        SearchContext race = new SearchContext(context);
+        List<Callable<Board>> racers = new ArrayList<>();
+        for (SolverEngine engine : engines) {
+            Board clone = board.cloneBoard();
+            racers.add(() -> run(race, engine, clone));
+        }
+        Board solved = race(racers, race, context);
+        if (solved == null) {
+            return false;
+        }
+        for (int row = 0; row < board.size(); row++) {
+            for (int col = 0; col < board.size(); col++) {
+                if (board.getElement(row, col) == 0) {
+                    board.setElement(row, col, solved.getElement(row, col));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countSolutions(Board board, int limit, SearchContext context) {
+        SearchContext race = new SearchContext(context);
+        List<Callable<Integer>> racers = new ArrayList<>();
+        for (SolverEngine engine : counters) {
+            racers.add(() -> {
+                SearchContext own = new SearchContext(race);
+                try {
+                    return engine.countSolutions(board, limit, own);
+                } finally {
+                    own.finish();
+                }
+            });
+        }
+        return race(racers, race, context);
+    }
+
+    /**
+     * Solve the clone with one engine.
+     *
+     * @return Returns the solved clone, or null if there is no solution.
+     */
+    private static Board run(SearchContext race, SolverEngine engine, Board clone) {
+        SearchContext own = new SearchContext(race);
+        try {
+            return engine.solve(clone, own) ? clone : null;
+        } finally {
+            own.finish();
+        }
+    }
+
+    /**
+     * Returns the result of the first racer to finish, and cancels the others.
+     *
+     * @throws CancellationException if the caller's run was cancelled or ran out of budget.
+     */
+    private <T> T race(List<Callable<T>> racers, SearchContext race, SearchContext context) {
+        context.checkpoint();
+        try {
+            return pool.invokeAny(racers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            race.cancel();
+        }
+    }
+
+    /**
+     * Propagation that tries the numbers of a square in random order, and
+     * starts over with twice the node budget whenever a run uses up its
+     * budget. Every restart follows a different path through the tree, so
+     * one that gets lost in a large subtree is cut short; the budget grows,
+     * so the search is still complete.
+     */
+    static class RandomRestarts implements SolverEngine {
+
+        /** Node budget of the first run. */
+        private static final long FIRST_BUDGET = 256;
+
+        private final long seed;
+
+        /**
+         * Create a search drawing from the given seed.
+         *
+         * @param seed Seed of the order of the numbers.
+         */
+        RandomRestarts(long seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean solve(Board board, SearchContext context) {
+            Random random = new Random(seed);
+            for (long budget = FIRST_BUDGET; ; budget *= 2) {
+                SearchCore core = new SearchCore(board);
+                SearchContext run = new SearchContext(context, budget);
+                try {
+                    if (!search(core, run, random)) {
+                        return false;
+                    }
+                    core.apply(board);
+                    return true;
+                } catch (CancellationException e) {
+                    if (context.isCancelled() || !run.isExhausted()) {
+                        throw e;
+                    }
+                } finally {
+                    run.finish();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         * Counting visits the whole tree, so the order of the numbers does not
+         * matter and this counts like {@link SolverEngine#PROPAGATION}.
+         */
+        @Override
+        public int countSolutions(Board board, int limit, SearchContext context) {
+            return PROPAGATION.countSolutions(board, limit, context);
+        }
+
+        /**
+         * Propagate the core and branch on its most constrained square, trying its numbers in random order.
+         *
+         * @return Returns whether a solution was found; if not, the core is left as it was.
+         */
+        private boolean search(SearchCore core, SearchContext context, Random random) {
+            context.checkpoint();
+            int mark = core.mark(), empty = core.empty();
+            boolean consistent = core.propagate();
+            context.propagated(empty - core.empty());
+            if (consistent) {
+                int cell = core.mostConstrained();
+                if (cell < 0) {
+                    return true;
+                }
+                int mask = core.candidates(cell);
+                while (mask != 0) {
+                    int num = pick(mask, random.nextInt(Integer.bitCount(mask)));
+                    mask &= ~(1 << num);
+                    int branch = core.mark();
+                    core.place(cell, num);
+                    context.ruleCheck();
+                    if (search(core, context, random)) {
+                        return true;
+                    }
+                    context.backtrack();
+                    core.undo(branch);
+                }
+            }
+            core.undo(mark);
+            return false;
+        }
+
+        /**
+         * Returns the number of the k-th set bit of the mask, counting from 0.
+         */
+        private static int pick(int mask, int k) {
+            for (int i = 0; i < k; i++) {
+                mask &= mask - 1;
+            }
+            return Integer.numberOfTrailingZeros(mask);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package code.Sudoku;
+
+/**
+ * Solves a board by constraint propagation. Naked singles (a square with
+ * one allowed number) and hidden singles (a number with one allowed square
+ * in a row, column or sub-grid) are placed until nothing changes; only then
+ * does the search branch, on the square with the fewest allowed numbers.
+ * The search runs on a {@link SearchCore}, undoing each branch by its trail.
+ */
+class PropagationEngine implements SolverEngine {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean solve(Board board, SearchContext context) {
+        SearchCore core = new SearchCore(board);
+        if (!search(core, context)) {
+            return false;
+        }
+        core.apply(board);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countSolutions(Board board, int limit, SearchContext context) {
+        return count(new SearchCore(board), limit, context, null);
+    }
+
+    /**
+     * Count the solutions of the given board like {@link #countSolutions(Board, int, SearchContext)},
+     * and keep the first one found, so one search tells both whether the
+     * board has a solution, whether it is unique, and what it is.
+     *
+     * @param board The board whose solutions are counted; it is not modified.
+     * @param limit The number of solutions after which counting stops.
+     * @param context The run the search belongs to.
+     * @param first Receives the numbers of the first solution, size * size of them in
+     *              row-major order; it must be all zeros and is left so if there is none.
+     * @return Returns the number of solutions found, at most limit.
+     * @throws java.util.concurrent.CancellationException if the run was cancelled.
+     */
+    int countSolutions(Board board, int limit, SearchContext context, byte[] first) {
+        return count(new SearchCore(board), limit, context, first);
+    }
+
+    /**
+     * Propagate the core and count the solutions below it. The core is left as it was.
+     *
+     * @param core The state to be searched.
+     * @param limit The number of solutions after which counting stops.
+     * @param context The run the search belongs to.
+     * @param first Receives the first solution if not null and still empty.
+     * @return Returns the number of solutions found, at most limit.
+     */
+    private int count(SearchCore core, int limit, SearchContext context, byte[] first) {
+        context.checkpoint();
+        int mark = core.mark(), empty = core.empty();
+        boolean consistent = core.propagate();
+        context.propagated(empty - core.empty());
+        int found = 0;
+        int cell = consistent ? core.mostConstrained() : -1;
+        if (consistent && cell < 0) {
+            found = 1;
+            if (first != null && first[0] == 0) {
+                core.copyValues(first);
+            }
+        } else if (consistent) {
+            int mask = core.candidates(cell);
+            while (mask != 0 && found < limit) {
+                int num = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                int branch = core.mark();
+                core.place(cell, num);
+                context.ruleCheck();
+                int below = count(core, limit - found, context, first);
+                if (below == 0) {
+                    context.backtrack();
+                }
+                found += below;
+                core.undo(branch);
+            }
+        }
+        core.undo(mark);
+        return found;
+    }
+
+    /**
+     * Propagate the core and branch on its most constrained square.
+     *
+     * @param core The state to be searched; it is left solved, or as it was if there is no solution.
+     * @param context The run the search belongs to.
+     * @return Returns whether a solution was found.
+     */
+    private boolean search(SearchCore core, SearchContext context) {
+        context.checkpoint();
+        int mark = core.mark(), empty = core.empty();
+        boolean consistent = core.propagate();
+        context.propagated(empty - core.empty());
+        if (consistent) {
+            int cell = core.mostConstrained();
+            if (cell < 0) {
+                return true;
+            }
+            int mask = core.candidates(cell);
+            while (mask != 0) {
+                int num = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                int branch = core.mark();
+                core.place(cell, num);
+                context.ruleCheck();
+                if (search(core, context)) {
+                    return true;
+                }
+                context.backtrack();
+                core.undo(branch);
+            }
+        }
+        core.undo(mark);
+        return false;
+    }
+}
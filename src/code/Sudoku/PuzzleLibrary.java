@@ -0,0 +1,212 @@
+package code.Sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A file of ready puzzles, read through memory-mapped pages so that a new
+ * game is a random read instead of a generator run.
+ * <p>
+ * Puzzles are kept in buckets, one per board size and difficulty. Every
+ * puzzle is a fixed-width record of size * size bytes in the format of
+ * {@link Board#pack(ByteBuffer)}, which the network adapter can send as is.
+ * The file is made of pages of {@value #PAGE_SIZE} bytes. Page 0 is the
+ * header: for every bucket the number of puzzles and the table of pages
+ * holding them. Every other page holds the records of one bucket, so record
+ * i of a bucket is found in one step from its page table.
+ * <p>
+ * Puzzles are appended at the end of the last page of their bucket. The
+ * record is written before the count in the header, so a crash can at worst
+ * lose the last puzzle.
+ */
+class PuzzleLibrary implements Closeable {
+
+    /** Board sizes the library has buckets for. */
+    static final int[] SIZES = {4, 9, 16, 25};
+
+    static final int PAGE_SIZE = 1 << 16;
+
+    /** Identifies the file format, "SDKL". */
+    private static final int MAGIC = 0x53444b4c;
+    private static final int VERSION = 1;
+
+    /** Pages a bucket can use; the header of every bucket fits in page 0. */
+    private static final int PAGES_PER_BUCKET = 1000;
+    /** Bytes of the magic number and version before the bucket headers. */
+    private static final int META_BYTES = 64;
+    /** Bytes of a bucket header: the puzzle count, the page count and the page table. */
+    private static final int BUCKET_BYTES = 8 + 4 * PAGES_PER_BUCKET;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    /** Mapped pages by page number, mapped the first time they are used. */
+    private final List<MappedByteBuffer> pages = new ArrayList<>();
+
+    /**
+     * Open a library file, creating an empty one if it does not exist.
+     *
+     * @param path Path of the library file.
+     * @throws IOException If the file cannot be opened or is not a library.
+     */
+    PuzzleLibrary(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, PAGE_SIZE);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("not a puzzle library: " + path);
+        }
+        pages.add(header);
+    }
+
+    /**
+     * Returns the number of puzzles of the given size and difficulty.
+     *
+     * @param size The size of the board.
+     * @param difficulty The difficulty of the puzzles.
+     * @return The number of records in the bucket.
+     */
+    synchronized int count(int size, Difficulty difficulty) {
+        return header.getInt(bucket(size, difficulty));
+    }
+
+    /**
+     * Returns a read-only view of one puzzle, without copying it.
+     *
+     * @param size The size of the board.
+     * @param difficulty The difficulty of the puzzle.
+     * @param index The index of the puzzle in its bucket.
+     * @return Returns size * size packed squares, from position 0 of the buffer.
+     * @throws IOException If the page cannot be mapped.
+     */
+    synchronized ByteBuffer puzzle(int size, Difficulty difficulty, int index) throws IOException {
+        int bucket = bucket(size, difficulty);
+        if (index < 0 || index >= header.getInt(bucket)) {
+            throw new IndexOutOfBoundsException("puzzle " + index + " of " + header.getInt(bucket));
+        }
+        int record = size * size, perPage = PAGE_SIZE / record;
+        ByteBuffer page = page(header.getInt(bucket + 8 + 4 * (index / perPage))).duplicate();
+        page.position(index % perPage * record);
+        page.limit(page.position() + record);
+        return page.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a random puzzle of the given size and difficulty as a new board.
+     *
+     * @param size The size of the board.
+     * @param difficulty The difficulty of the puzzle.
+     * @param random Source of the choice.
+     * @return Returns the board, or null if the bucket is empty.
+     * @throws IOException If the page cannot be mapped.
+     */
+    Board take(int size, Difficulty difficulty, Random random) throws IOException {
+        int count = count(size, difficulty);
+        if (count == 0) {
+            return null;
+        }
+        return Board.unpack(size, puzzle(size, difficulty, random.nextInt(count)));
+    }
+
+    /**
+     * Add a puzzle to the bucket of its size and the given difficulty.
+     *
+     * @param board The puzzle; it is not changed.
+     * @param difficulty The difficulty it rates as.
+     * @return Returns the index of the puzzle in its bucket.
+     * @throws IOException If the file cannot grow, or the bucket is full.
+     */
+    synchronized int append(Board board, Difficulty difficulty) throws IOException {
+        int size = board.size();
+        int bucket = bucket(size, difficulty);
+        int count = header.getInt(bucket), pageCount = header.getInt(bucket + 4);
+        int record = size * size, perPage = PAGE_SIZE / record;
+        if (count == pageCount * perPage) {
+            if (pageCount == PAGES_PER_BUCKET) {
+                throw new IOException("bucket full: " + size + "x" + size + " " + difficulty);
+            }
+            int number = (int) (channel.size() / PAGE_SIZE);
+            page(number);
+            header.putInt(bucket + 8 + 4 * pageCount, number);
+            header.putInt(bucket + 4, ++pageCount);
+        }
+        ByteBuffer page = page(header.getInt(bucket + 8 + 4 * (count / perPage))).duplicate();
+        page.position(count % perPage * record);
+        board.pack(page);
+        header.putInt(bucket, count + 1);
+        return count;
+    }
+
+    /**
+     * Write the mapped pages back to the file.
+     */
+    synchronized void flush() {
+        for (MappedByteBuffer page : pages) {
+            if (page != null) {
+                page.force();
+            }
+        }
+    }
+
+    /**
+     * Flush and close the file. The pages are unmapped once they are no longer reachable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Returns the mapped page of the given number, growing the file if needed.
+     */
+    private MappedByteBuffer page(int number) throws IOException {
+        while (pages.size() <= number) {
+            pages.add(null);
+        }
+        MappedByteBuffer page = pages.get(number);
+        if (page == null) {
+            page = channel.map(FileChannel.MapMode.READ_WRITE, (long) number * PAGE_SIZE, PAGE_SIZE);
+            pages.set(number, page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns whether the library has buckets for boards of the given size.
+     *
+     * @param size The size of the board.
+     * @return Returns true if the size is one of {@link #SIZES}.
+     */
+    static boolean holds(int size) {
+        for (int known : SIZES) {
+            if (known == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the offset of a bucket header in page 0.
+     */
+    private static int bucket(int size, Difficulty difficulty) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (SIZES[i] == size) {
+                return META_BYTES + (i * Difficulty.values().length + difficulty.ordinal()) * BUCKET_BYTES;
+            }
+        }
+        throw new IllegalArgumentException("no bucket for size " + size);
+    }
+}
@@ -0,0 +1,79 @@
+package code.Sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link PuzzleLibrary} class by appending puzzles to a
+ * temporary file and reading them back, also after reopening it.
+ */
+public class PuzzleLibraryTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("puzzles", ".lib");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testAppendAndReopen() throws IOException {
+        Board[] boards = new Board[3];
+        Generator generator = new Generator(new Random(1));
+        try (PuzzleLibrary library = new PuzzleLibrary(file.toPath())) {
+            for (int i = 0; i < boards.length; i++) {
+                boards[i] = new Board(9);
+                generator.generate(boards[i], Generator.defaultClues(9));
+                assertEquals(i, library.append(boards[i], Difficulty.MEDIUM));
+            }
+            assertEquals(3, library.count(9, Difficulty.MEDIUM));
+            assertEquals(0, library.count(9, Difficulty.EASY));
+            assertNull(library.take(9, Difficulty.EASY, new Random()));
+        }
+        try (PuzzleLibrary library = new PuzzleLibrary(file.toPath())) {
+            assertEquals(3, library.count(9, Difficulty.MEDIUM));
+            for (int i = 0; i < boards.length; i++) {
+                Board board = Board.unpack(9, library.puzzle(9, Difficulty.MEDIUM, i));
+                for (int cell = 0; cell < 81; cell++) {
+                    assertEquals(boards[i].getElement(cell / 9, cell % 9), board.getElement(cell / 9, cell % 9));
+                    assertEquals(boards[i].isMutable(cell / 9, cell % 9), board.isMutable(cell / 9, cell % 9));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testManyPages() throws IOException {
+        Board board = new Board(25);
+        board.setGiven(24, 24, 25);
+        int records = 3 * PuzzleLibrary.PAGE_SIZE / (25 * 25);
+        try (PuzzleLibrary library = new PuzzleLibrary(file.toPath())) {
+            for (int i = 0; i < records; i++) {
+                board.setGiven(0, 0, i % 25 + 1);
+                library.append(board, Difficulty.HARD);
+                library.append(board, Difficulty.EASY);
+            }
+            for (int i = 0; i < records; i += 7) {
+                ByteBuffer puzzle = library.puzzle(25, Difficulty.EASY, i);
+                assertEquals(625, puzzle.remaining());
+                assertTrue(puzzle.isReadOnly());
+                assertEquals(0x20 | (i % 25 + 1), puzzle.get(0));
+                assertEquals(0x20 | 25, puzzle.get(624));
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package code.Sudoku;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of pre-generated puzzles so that starting a new game does not
+ * have to wait for the generator. Every board size has a bounded queue
+ * kept full by a low-priority background thread.
+ * <p>
+ * The pool remembers the canonical fingerprints of the puzzles it recently
+ * handed out, and the fillers skip puzzles that are a relabelled, mirrored
+ * or shuffled copy of one of them.
+ * <p>
+ * A pool can be backed by a {@link PuzzleLibrary}. Every puzzle it
+ * generates is rated and appended to the library, and a miss is served by
+ * a random puzzle of the library when it has one of the size, so that it
+ * is a read instead of a generator run. The shared pool keeps its library
+ * in the user's home directory, and works without one if the file cannot
+ * be opened.
+ */
+class PuzzlePool {
+
+    /** Number of puzzles kept ready per board size. */
+    private static final int CAPACITY = 8;
+
+    /** Number of fingerprints remembered per board size. */
+    private static final int HISTORY = 4096;
+
+    /**
+     * Repeated puzzles generated in a row before one is kept anyway, since
+     * small boards only have a few distinct puzzles.
+     */
+    private static final int MAX_REPEATS = 16;
+
+    /** Pool used by the game, warming up the queue of every size the dialog offers. */
+    private static final PuzzlePool SHARED = new PuzzlePool(CAPACITY, openLibrary(), 4, 9, 16, 25);
+
+    private final int capacity;
+    /** Library of puzzles generated before, or null. */
+    private final PuzzleLibrary library;
+    private final Random random = new Random();
+    private final Map<Integer, BlockingQueue<Board>> queues = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong repeats = new AtomicLong();
+    private final Map<Integer, Set<Long>> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Create a pool and start filling the queues of the given sizes.
+     *
+     * @param capacity Number of puzzles kept ready per size.
+     * @param sizes Board sizes to start generating right away.
+     */
+    PuzzlePool(int capacity, int... sizes) {
+        this(capacity, null, sizes);
+    }
+
+    /**
+     * Create a pool backed by a library and start filling the queues of the given sizes.
+     *
+     * @param capacity Number of puzzles kept ready per size.
+     * @param library Library serving misses and keeping every generated puzzle, or null for none.
+     * @param sizes Board sizes to start generating right away.
+     */
+    PuzzlePool(int capacity, PuzzleLibrary library, int... sizes) {
+        this.capacity = capacity;
+        this.library = library;
+        for (int size : sizes) {
+            queue(size);
+        }
+    }
+
+    /**
+     * Returns the library of the shared pool, or null if its file cannot be opened.
+     */
+    private static PuzzleLibrary openLibrary() {
+        try {
+            return new PuzzleLibrary(new File(System.getProperty("user.home"), ".sudoku-puzzles.lib").toPath());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the pool shared by the game.
+     *
+     * @return The shared pool.
+     */
+    static PuzzlePool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Take a ready puzzle of the given size. If none is ready (a miss) one is
+     * read from the library or else generated on the calling thread, so the event thread should use
+     * {@link #request(int)} instead. Sizes not seen before get their own
+     * queue from then on.
+     *
+     * @param size The size of the board.
+     * @return A new puzzle that is not shared with the pool.
+     */
+    Board take(int size) {
+        Board board = queue(size).poll();
+        if (board != null) {
+            hits.incrementAndGet();
+            return board;
+        }
+        misses.incrementAndGet();
+        board = fromLibrary(size);
+        return board != null ? board : generate(size);
+    }
+
+    /**
+     * Ask for a puzzle of the given size without waiting for it. A ready
+     * puzzle or one read from the library on a miss completes the future
+     * right away; otherwise the puzzle is generated in the background by
+     * {@link Solver#submit} and the future completes once it is done.
+     *
+     * @param size The size of the board.
+     * @return Returns the future of a new puzzle that is not shared with the pool.
+     */
+    CompletableFuture<Board> request(int size) {
+        Board board = queue(size).poll();
+        if (board != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(board);
+        }
+        misses.incrementAndGet();
+        board = fromLibrary(size);
+        if (board != null) {
+            return CompletableFuture.completedFuture(board);
+        }
+        CompletableFuture<Board> future = new CompletableFuture<>();
+        Solver.submit(() -> {
+            try {
+                future.complete(generate(size));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Generate a puzzle for a miss, remember it so the fillers do not hand out
+     * a copy soon, and keep it in the library.
+     */
+    private Board generate(int size) {
+        Board board = new Board(size);
+        board.generateBoard();
+        remember(size, new Canonicalizer().fingerprint(board));
+        store(board);
+        return board;
+    }
+
+    /**
+     * Returns a puzzle of the library for a miss, every puzzle of the size
+     * being equally likely, and remembers it.
+     *
+     * @return Returns the puzzle, or null if there is no library or it has no puzzle of the size.
+     */
+    private Board fromLibrary(int size) {
+        if (library == null || !PuzzleLibrary.holds(size)) {
+            return null;
+        }
+        try {
+            int total = 0;
+            for (Difficulty difficulty : Difficulty.values()) {
+                total += library.count(size, difficulty);
+            }
+            if (total == 0) {
+                return null;
+            }
+            int pick;
+            synchronized (random) {
+                pick = random.nextInt(total);
+            }
+            for (Difficulty difficulty : Difficulty.values()) {
+                int count = library.count(size, difficulty);
+                if (pick < count) {
+                    Board board = Board.unpack(size, library.puzzle(size, difficulty, pick));
+                    remember(size, new Canonicalizer().fingerprint(board));
+                    return board;
+                }
+                pick -= count;
+            }
+        } catch (IOException e) {
+            /*an unreadable page is treated like an empty library*/
+        }
+        return null;
+    }
+
+    /**
+     * Rate a generated puzzle and append it to the library. A full bucket or
+     * a file that cannot grow only stops the library from growing.
+     */
+    private void store(Board board) {
+        if (library == null || !PuzzleLibrary.holds(board.size())) {
+            return;
+        }
+        try {
+            library.append(board, new DifficultyRater().rate(board).difficulty());
+        } catch (IOException e) {
+            /*the puzzle is still handed out, it is just not kept*/
+        }
+    }
+
+    /**
+     * Returns the number of puzzles currently ready for the given size.
+     *
+     * @param size The size of the board.
+     * @return The number of puzzles that can be taken without a miss.
+     */
+    int available(int size) {
+        BlockingQueue<Board> queue = queues.get(size);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Returns how many calls to take or request found a puzzle ready.
+     *
+     * @return The number of hits.
+     */
+    long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns how many calls to take or request had to generate a puzzle themselves.
+     *
+     * @return The number of misses.
+     */
+    long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns how many generated puzzles were dropped as copies of recent ones.
+     *
+     * @return The number of repeats skipped.
+     */
+    long repeats() {
+        return repeats.get();
+    }
+
+    /**
+     * Returns the queue of the given size, creating it and its filler thread if needed.
+     */
+    private BlockingQueue<Board> queue(int size) {
+        return queues.computeIfAbsent(size, key -> {
+            BlockingQueue<Board> queue = new ArrayBlockingQueue<>(capacity);
+            Thread filler = new Thread(() -> fill(size, queue), "puzzle-pool-" + size);
+            filler.setDaemon(true);
+            filler.setPriority(Thread.MIN_PRIORITY);
+            filler.start();
+            return queue;
+        });
+    }
+
+    /**
+     * Keep generating puzzles into the queue, blocking while it is full.
+     */
+    private void fill(int size, BlockingQueue<Board> queue) {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        int inRow = 0;
+        try {
+            while (true) {
+                Board board = new Board(size);
+                board.generateBoard();
+                if (!remember(size, canonicalizer.fingerprint(board)) && ++inRow < MAX_REPEATS) {
+                    repeats.incrementAndGet();
+                    continue;
+                }
+                inRow = 0;
+                store(board);
+                queue.put(board);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Add a fingerprint to the recent ones of the given size.
+     *
+     * @return Returns false if it was already there.
+     */
+    @SuppressWarnings("serial")
+    private boolean remember(int size, long fingerprint) {
+        Set<Long> history = histories.computeIfAbsent(size, key -> Collections.newSetFromMap(
+                new LinkedHashMap<Long, Boolean>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                        return size() > HISTORY;
+                    }
+                }));
+        synchronized (history) {
+            return history.add(fingerprint);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package code.Sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link PuzzlePool} class: ready puzzles are hits, the rest are
+ * misses read from the library or generated by the caller or in the
+ * background, and the fillers skip copies of puzzles handed out recently.
+ */
+public class PuzzlePoolTest {
+
+    @Test
+    public void testHits() throws InterruptedException {
+        PuzzlePool pool = new PuzzlePool(2, 4);
+        waitFor(pool, 4, 2);
+        assertEquals(2, pool.available(4));
+        Board board = pool.take(4);
+        assertEquals(4, board.size());
+        assertEquals(1, pool.hits());
+        assertEquals(0, pool.misses());
+        assertTrue(pool.request(4).isDone());
+        assertEquals(2, pool.hits());
+    }
+
+    @Test
+    public void testMisses() throws InterruptedException, ExecutionException {
+        PuzzlePool pool = new PuzzlePool(2);
+        assertEquals(0, pool.available(16));
+        /*the filler started by the first call cannot have a 16x16 puzzle ready yet*/
+        CompletableFuture<Board> next = pool.request(16);
+        assertEquals(16, next.get().size());
+        assertEquals(0, pool.hits());
+        assertEquals(1, pool.misses());
+        /*the same for take, on the calling thread*/
+        assertEquals(9, pool.take(9).size());
+        assertEquals(2, pool.misses());
+    }
+
+    @Test
+    public void testLibrary() throws IOException, InterruptedException {
+        File file = File.createTempFile("puzzles", ".lib");
+        file.delete();
+        try (PuzzleLibrary library = new PuzzleLibrary(file.toPath())) {
+            Board stored = new Board(9);
+            new Generator(new Random(1)).generate(stored, Generator.defaultClues(9));
+            library.append(stored, Difficulty.MEDIUM);
+            PuzzlePool pool = new PuzzlePool(2, library);
+            /*the filler started by the first call cannot have a puzzle ready yet, so the library serves the miss*/
+            Board board = pool.request(9).getNow(null);
+            assertNotNull(board);
+            assertEquals(1, pool.misses());
+            for (int cell = 0; cell < 81; cell++) {
+                assertEquals(stored.getElement(cell / 9, cell % 9), board.getElement(cell / 9, cell % 9));
+            }
+            /*every puzzle the filler generates is kept*/
+            waitFor(pool, 9, 2);
+            int count = 0;
+            for (Difficulty difficulty : Difficulty.values()) {
+                count += library.count(9, difficulty);
+            }
+            assertTrue(count >= 3);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRepeatsSkipped() throws InterruptedException {
+        /*4x4 boards only have about a hundred distinct puzzles, so copies turn up soon*/
+        PuzzlePool pool = new PuzzlePool(8, 4);
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            waitFor(pool, 4, 1);
+            assertTrue(seen.add(canonicalizer.fingerprint(pool.take(4))));
+        }
+        for (int i = 0; i < 100 && pool.repeats() == 0; i++) {
+            waitFor(pool, 4, 1);
+            pool.take(4);
+        }
+        assertTrue(pool.repeats() > 0);
+        assertEquals(0, pool.misses());
+    }
+
+    /** Wait until the filler of a size has the given number of puzzles ready. */
+    private static void waitFor(PuzzlePool pool, int size, int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && pool.available(size) < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
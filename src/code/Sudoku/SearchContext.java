@@ -0,0 +1,221 @@
+package code.Sudoku;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared state of one solving run. Engines call {@link #checkpoint()} at
+ * every node of their search, which stops the search once the run is
+ * cancelled, its thread is interrupted, or it uses up its node or time budget.
+ *
+ * <p>
+ * A context is advanced by one thread at a time. Searches running in
+ * parallel each get a child context; children charge their nodes to
+ * their parent, so the parent's budget covers the whole run.
+ * </p>
+ *
+ * <p>
+ * A context may also carry {@link SolverMetrics}, shared with its children.
+ * The engines count backtracks, rule checks and propagated placements on
+ * the context, which adds them to the metrics together with the nodes at
+ * every budget check and when the search calls {@link #finish()}.
+ * </p>
+ */
+class SearchContext {
+
+    /** Nodes visited between checks of the clock, the interrupt flag and the parent. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /** Context of the enclosing run, or null. Cancelling it cancels this one too. */
+    private final SearchContext parent;
+    private final long maxNodes;
+    /** Nodes visited between checks of the budget; smaller than usual for small budgets, here or in the parent. */
+    private final int interval;
+    private final boolean timed;
+    /** System.nanoTime() at which the run times out, if timed. */
+    private final long deadline;
+    private final AtomicLong nodes = new AtomicLong();
+    /** Nodes visited since they were last added to nodes. */
+    private int pending;
+    /** Part of pending already added to the metrics. */
+    private int recorded;
+    private final SolverMetrics metrics;
+    private long backtracks, ruleChecks, propagations;
+    private volatile boolean cancelled;
+    private volatile boolean exhausted;
+
+    /**
+     * Create a context for a new run without a budget.
+     */
+    SearchContext() {
+        this(null, null, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Create a context for a run nested inside another one.
+     *
+     * @param parent The context of the enclosing run.
+     */
+    SearchContext(SearchContext parent) {
+        this(parent, parent.metrics, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Create a context for a run nested inside another one, with a node budget of its own.
+     * Running out of it stops this run only; the nodes still count for the parent.
+     *
+     * @param parent The context of the enclosing run.
+     * @param maxNodes The number of search nodes after which this run stops.
+     */
+    SearchContext(SearchContext parent, long maxNodes) {
+        this(parent, parent.metrics, maxNodes, 0);
+    }
+
+    /**
+     * Create a context for a new run with a budget.
+     *
+     * @param maxNodes The number of search nodes after which the run stops.
+     * @param timeoutMillis The time after which the run stops, or 0 for no limit.
+     */
+    SearchContext(long maxNodes, long timeoutMillis) {
+        this(null, null, maxNodes, timeoutMillis);
+    }
+
+    /**
+     * Create a context for a new run with a budget, counting its work in the given metrics.
+     *
+     * @param metrics The metrics of the solver call, or null.
+     * @param maxNodes The number of search nodes after which the run stops.
+     * @param timeoutMillis The time after which the run stops, or 0 for no limit.
+     */
+    SearchContext(SolverMetrics metrics, long maxNodes, long timeoutMillis) {
+        this(null, metrics, maxNodes, timeoutMillis);
+    }
+
+    private SearchContext(SearchContext parent, SolverMetrics metrics, long maxNodes, long timeoutMillis) {
+        this.parent = parent;
+        this.metrics = metrics;
+        this.maxNodes = maxNodes;
+        int interval = (int) Math.max(1, Math.min(CHECK_INTERVAL, maxNodes));
+        this.interval = parent == null ? interval : Math.min(interval, parent.interval);
+        this.timed = timeoutMillis > 0;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Ask every search using this context to stop.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether this run or an enclosing one was cancelled.
+     *
+     * @return True if the search should stop.
+     */
+    boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * Returns whether the run stopped because it used up its node or time budget,
+     * or that of an enclosing run.
+     *
+     * @return True if the budget ran out.
+     */
+    boolean isExhausted() {
+        return exhausted || (parent != null && parent.isExhausted());
+    }
+
+    /**
+     * Returns the number of search nodes visited so far, including those of child runs.
+     *
+     * @return The number of calls to checkpoint.
+     */
+    long nodes() {
+        return nodes.get() + pending;
+    }
+
+    /**
+     * Called by the engines once per search node.
+     *
+     * @throws CancellationException if the run was cancelled or ran out of budget.
+     */
+    void checkpoint() {
+        if (++pending >= interval) {
+            charge(pending);
+            record();
+            pending = 0;
+            recorded = 0;
+            if (Thread.currentThread().isInterrupted()) {
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Called by the engines when a placement is undone because nothing fits below it.
+     */
+    void backtrack() {
+        backtracks++;
+    }
+
+    /**
+     * Called by the engines when a number is tried in a square.
+     */
+    void ruleCheck() {
+        ruleChecks++;
+    }
+
+    /**
+     * Called by the engines after filling squares by propagation.
+     *
+     * @param count The number of squares filled.
+     */
+    void propagated(int count) {
+        propagations += count;
+    }
+
+    /**
+     * Add the counts not yet in the metrics to them. Called when a search
+     * using this context is over, whether it finished or was cancelled.
+     */
+    void finish() {
+        record();
+    }
+
+    /**
+     * Add the counts since the last call to the metrics, if any.
+     */
+    private void record() {
+        if (metrics != null) {
+            metrics.add(pending - recorded, backtracks, ruleChecks, propagations);
+            recorded = pending;
+            backtracks = 0;
+            ruleChecks = 0;
+            propagations = 0;
+        }
+    }
+
+    /**
+     * Add visited nodes to this run and its enclosing runs, checking the budgets.
+     */
+    private void charge(long count) {
+        long total = nodes.addAndGet(count);
+        if (total > maxNodes || (timed && System.nanoTime() - deadline > 0)) {
+            exhausted = true;
+            cancelled = true;
+        }
+        if (parent != null) {
+            parent.charge(count);
+            if (parent.isCancelled()) {
+                cancelled = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package code.Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The state of a search over the squares of a board, shared by the
+ * backtracking and propagation engines. The numbers and the occupancy mask
+ * of every unit live in primitive arrays. Every placement is pushed on a
+ * trail, so going back is popping the trail down to a mark instead of
+ * copying the state, and a search allocates nothing per node.
+ * <p>
+ * The allowed numbers of a square are the complement of the masks of its
+ * units, computed once per square tried; placing a number only sets bits
+ * and needs no further check. The board is only written at the end, by
+ * {@link #apply(Board)}.
+ * <p>
+ * The rules are those of the {@link ConstraintSet} of the board. The row,
+ * column and sub-grid of a square are looked up directly; the units a
+ * variant adds, its parity and its cage sums are only consulted when the
+ * set has them, so classic boards pay nothing for them.
+ */
+class SearchCore {
+
+    private static final int[] NONE = new int[0];
+
+    private final int size;
+    private final int full;
+    /** Whether the rules are the classic ones, so that the tables of the variant are not needed. */
+    private final boolean classic;
+    /** The row, column and sub-grid of every square, as indices into masks. */
+    private final int[] rowOf, colOf, boxOf;
+    /** Other units of every square, as indices into masks. */
+    private final int[][] extraOf;
+    /** Numbers allowed in every square by its parity. */
+    private final int[] allowed;
+    /** Cage of every square, or -1, and the sum left and empty squares of every cage. */
+    private final int[] cageOf, cageLeft, cageEmpty;
+    private final ConstraintSet constraints;
+    /** Squares of every house, i.e. every unit that holds every number. */
+    private final int[][] units;
+    private final int[] values;
+    /** Occupancy bitmask of every unit, in the order of units. */
+    private final int[] masks;
+    /** Squares filled by the search, in order. */
+    private final int[] trail;
+    private int top;
+    private int empty;
+
+    /**
+     * Copy the numbers of the given board.
+     *
+     * @param board The board to be searched; it is not changed.
+     */
+    SearchCore(Board board) {
+        size = board.size();
+        full = ((1 << size) - 1) << 1;
+        constraints = board.getConstraints();
+        classic = constraints.isClassic();
+        int cells = size * size;
+        rowOf = new int[cells];
+        colOf = new int[cells];
+        boxOf = new int[cells];
+        extraOf = new int[cells][];
+        allowed = new int[cells];
+        cageOf = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int[] unitsOf = constraints.unitsOf(cell);
+            rowOf[cell] = unitsOf[0];
+            colOf[cell] = unitsOf[1];
+            boxOf[cell] = unitsOf[2];
+            extraOf[cell] = unitsOf.length == 3 ? NONE : Arrays.copyOfRange(unitsOf, 3, unitsOf.length);
+            allowed[cell] = constraints.allowed(cell);
+            cageOf[cell] = constraints.cageOf(cell);
+        }
+        int houses = 0;
+        for (int u = 0; u < constraints.unitCount(); u++) {
+            houses += constraints.isHouse(u) ? 1 : 0;
+        }
+        units = new int[houses][];
+        for (int u = 0, h = 0; u < constraints.unitCount(); u++) {
+            if (constraints.isHouse(u)) {
+                units[h++] = constraints.unit(u);
+            }
+        }
+        cageLeft = new int[constraints.cageCount()];
+        cageEmpty = new int[constraints.cageCount()];
+        for (int c = 0; c < cageLeft.length; c++) {
+            cageLeft[c] = constraints.cageSum(c);
+            cageEmpty[c] = constraints.cage(c).length;
+        }
+        values = new int[cells];
+        masks = new int[constraints.unitCount()];
+        trail = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int num = board.getElement(cell / size, cell % size);
+            if (num == 0) {
+                empty++;
+            } else {
+                values[cell] = num;
+                mark(cell, 1 << num);
+                if (cageOf[cell] >= 0) {
+                    cageLeft[cageOf[cell]] -= num;
+                    cageEmpty[cageOf[cell]]--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Set a bit in the masks of every unit of a square.
+     */
+    private void mark(int cell, int bit) {
+        masks[rowOf[cell]] |= bit;
+        masks[colOf[cell]] |= bit;
+        masks[boxOf[cell]] |= bit;
+        for (int unit : extraOf[cell]) {
+            masks[unit] |= bit;
+        }
+    }
+
+    /**
+     * Returns the numbers allowed in a square.
+     *
+     * @param cell The square, as row * size + col.
+     * @return Returns a bitmask with bit n set if n is allowed.
+     */
+    int candidates(int cell) {
+        int mask = ~(masks[rowOf[cell]] | masks[colOf[cell]] | masks[boxOf[cell]]) & full;
+        if (classic) {
+            return mask;
+        }
+        for (int unit : extraOf[cell]) {
+            mask &= ~masks[unit];
+        }
+        mask &= allowed[cell];
+        int cage = cageOf[cell];
+        if (cage >= 0) {
+            mask &= constraints.cageCandidates(cageLeft[cage], cageEmpty[cage]);
+        }
+        return mask;
+    }
+
+    /**
+     * Put an allowed number in an empty square and push it on the trail.
+     *
+     * @param cell The square, as row * size + col.
+     * @param num A number among its candidates.
+     */
+    void place(int cell, int num) {
+        values[cell] = num;
+        mark(cell, 1 << num);
+        if (cageOf[cell] >= 0) {
+            cageLeft[cageOf[cell]] -= num;
+            cageEmpty[cageOf[cell]]--;
+        }
+        trail[top++] = cell;
+        empty--;
+    }
+
+    /**
+     * Returns the current height of the trail, to go back to with {@link #undo(int)}.
+     *
+     * @return The number of squares filled by the search so far.
+     */
+    int mark() {
+        return top;
+    }
+
+    /**
+     * Empty the squares filled since the mark was taken.
+     *
+     * @param mark A height returned by {@link #mark()}.
+     */
+    void undo(int mark) {
+        while (top > mark) {
+            int cell = trail[--top];
+            int num = values[cell];
+            values[cell] = 0;
+            masks[rowOf[cell]] &= ~(1 << num);
+            masks[colOf[cell]] &= ~(1 << num);
+            masks[boxOf[cell]] &= ~(1 << num);
+            for (int unit : extraOf[cell]) {
+                masks[unit] &= ~(1 << num);
+            }
+            if (cageOf[cell] >= 0) {
+                cageLeft[cageOf[cell]] += num;
+                cageEmpty[cageOf[cell]]++;
+            }
+            empty++;
+        }
+    }
+
+    /**
+     * Returns the number of empty squares.
+     *
+     * @return The squares left to fill.
+     */
+    int empty() {
+        return empty;
+    }
+
+    /**
+     * Returns the first empty square from the given one on, in row-major order.
+     *
+     * @param from The square to start at.
+     * @return Returns the square, or -1 if every square from there on is filled.
+     */
+    int nextEmpty(int from) {
+        for (int cell = from; cell < values.length; cell++) {
+            if (values[cell] == 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Place naked and hidden singles until neither finds anything. The
+     * placements are on the trail, so a failed propagation is undone like any
+     * other step.
+     *
+     * @return Returns false if some square or number ran out of options.
+     */
+    boolean propagate() {
+        boolean changed = true;
+        while (changed && empty > 0) {
+            changed = false;
+            for (int cell = 0; cell < values.length; cell++) {
+                if (values[cell] == 0) {
+                    int mask = candidates(cell);
+                    if (mask == 0) {
+                        return false;
+                    }
+                    if ((mask & (mask - 1)) == 0) {
+                        place(cell, Integer.numberOfTrailingZeros(mask));
+                        changed = true;
+                    }
+                }
+            }
+            for (int[] unit : units) {
+                int once = 0, twice = 0, used = 0;
+                for (int cell : unit) {
+                    if (values[cell] == 0) {
+                        int mask = candidates(cell);
+                        twice |= once & mask;
+                        once |= mask;
+                    } else {
+                        used |= 1 << values[cell];
+                    }
+                }
+                if ((once | used) != full) {
+                    return false;
+                }
+                int hidden = once & ~twice;
+                while (hidden != 0) {
+                    int num = Integer.numberOfTrailingZeros(hidden);
+                    hidden &= hidden - 1;
+                    for (int cell : unit) {
+                        if (values[cell] == 0 && (candidates(cell) & (1 << num)) != 0) {
+                            place(cell, num);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the empty square with the fewest allowed numbers, or -1 if the board is full.
+     *
+     * @return The square, as row * size + col.
+     */
+    int mostConstrained() {
+        int best = -1, fewest = Integer.MAX_VALUE;
+        for (int cell = 0; cell < values.length; cell++) {
+            if (values[cell] == 0) {
+                int count = Integer.bitCount(candidates(cell));
+                if (count < fewest) {
+                    best = cell;
+                    fewest = count;
+                    if (count <= 2) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Copy the numbers of every square.
+     *
+     * @param into Receives size * size numbers in row-major order.
+     */
+    void copyValues(byte[] into) {
+        for (int cell = 0; cell < values.length; cell++) {
+            into[cell] = (byte) values[cell];
+        }
+    }
+
+    /**
+     * Write the squares filled by the search into the board.
+     *
+     * @param board The board the search started from.
+     */
+    void apply(Board board) {
+        for (int i = 0; i < top; i++) {
+            int cell = trail[i];
+            board.setElement(cell / size, cell % size, values[cell]);
+        }
+    }
+}
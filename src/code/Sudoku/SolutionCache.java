@@ -0,0 +1,137 @@
+package code.Sudoku;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the outcome of recent solves by the {@link Board#hash()} of the
+ * board, so asking again about a board that has not changed, or that undo
+ * and redo brought back, costs a lookup instead of a search. The least
+ * recently used boards are dropped once {@value #CAPACITY} are kept.
+ * <p>
+ * Every entry keeps the numbers of its board, and a lookup only hits if the
+ * board holds the same numbers under the same {@link ConstraintSet}, so two
+ * boards with the same hash, or the same numbers in different variants,
+ * never share an answer.
+ */
+class SolutionCache {
+
+    /** Boards remembered before the least recently used one is dropped. */
+    static final int CAPACITY = 256;
+
+    private static final SolutionCache SHARED = new SolutionCache(CAPACITY);
+
+    /**
+     * What is known about one board.
+     */
+    static class Entry {
+
+        private final ConstraintSet rules;
+        private final byte[] numbers;
+        private final byte[] solution;
+
+        Entry(ConstraintSet rules, byte[] numbers, byte[] solution) {
+            this.rules = rules;
+            this.numbers = numbers;
+            this.solution = solution;
+        }
+
+        /**
+         * Returns whether the board can be solved.
+         *
+         * @return True if a solution is known.
+         */
+        boolean solvable() {
+            return solution != null;
+        }
+
+        /**
+         * Returns the solution of the board.
+         *
+         * @return Returns size * size numbers in row-major order, or null if the board is not solvable.
+         */
+        byte[] solution() {
+            return solution == null ? null : solution.clone();
+        }
+    }
+
+    private final Map<Long, Entry> entries;
+    private long hits, misses;
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity The number of boards kept.
+     */
+    @SuppressWarnings("serial")
+    SolutionCache(int capacity) {
+        entries = new LinkedHashMap<Long, Entry>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SolutionCache.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache used by every {@link Solver}.
+     *
+     * @return The shared cache.
+     */
+    static SolutionCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns what is known about a board with the numbers and rules of the given one.
+     *
+     * @param board The board to be looked up; it is not changed.
+     * @return Returns the entry, or null if the board is not in the cache.
+     */
+    synchronized Entry get(Board board) {
+        Entry entry = entries.get(board.hash());
+        if (entry == null || entry.rules != board.getConstraints() || !board.hasNumbers(entry.numbers)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Remember the outcome of solving a board, replacing any board with the same hash.
+     *
+     * @param hash The hash of the board before it was solved.
+     * @param rules The constraints of the board.
+     * @param numbers The numbers of the board before it was solved, from {@link Board#numbers()}.
+     * @param solution The numbers of the solved board, or null if it has no solution.
+     */
+    synchronized void put(long hash, ConstraintSet rules, byte[] numbers, byte[] solution) {
+        entries.put(hash, new Entry(rules, numbers, solution));
+    }
+
+    /**
+     * Forget every board.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of lookups that found their board.
+     *
+     * @return The number of hits.
+     */
+    synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find their board.
+     *
+     * @return The number of misses.
+     */
+    synchronized long misses() {
+        return misses;
+    }
+}
@@ -1,73 +1,247 @@
 package code.Sudoku;
 
+import java.util.Random;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 class Solver {
 
+    /** Outcome of a solve run under a budget. */
+    enum Result { SOLVED, UNSOLVABLE, TIMED_OUT }
+
+    /** Time given to isSolvable before the board is reported as not solvable. */
+    static final long TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Executor shared by every budgeted solve. It has one daemon thread per
+     * core and a bounded queue; when the queue is full the caller runs the
+     * solve, which is fine for callers that wait for the result anyway.
+     */
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    /**
+     * Executor of the tasks started by {@link #submit(Callable)}, whose callers,
+     * e.g. the event thread, must not run them. It has as many threads as
+     * EXECUTOR but its queue never fills, so a submission never blocks.
+     */
+    private static final ExecutorService BACKGROUND = createBackground();
+
     private Board original;
-    private Board clone;
 
     Solver(Board original) {
         this.original = original;
     }
 
+    private static ExecutorService createExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(64), runnable -> {
+                    Thread thread = new Thread(runnable, "solver-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService createBackground() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "solver-background-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Run a task in the background, never on the calling thread, so the event
+     * thread can start the solve of a game or the generation of a puzzle.
+     * The task should have a budget or be cancelled when it is no longer needed.
+     *
+     * @param task The task.
+     * @return Returns the future of the task.
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        return BACKGROUND.submit(task);
+    }
+
     void generateBoard() {
-        ExecutorService service = Executors.newSingleThreadExecutor();
-        original.fillBoard();
+        measure(SolverStatistics.Operation.GENERATE, metrics -> {
+            new Generator(new Random(), metrics).generate(original, Generator.defaultClues(original.size()));
+            return null;
+        });
+    }
+
+    void generateBoard(Difficulty difficulty) {
+        measure(SolverStatistics.Operation.GENERATE, metrics -> {
+            new Generator(new Random(), metrics).generate(original, difficulty);
+            return null;
+        });
+    }
+
+    boolean isSolvable() {
+        return check(Long.MAX_VALUE, TIMEOUT_MILLIS) == Result.SOLVED;
+    }
+
+    /**
+     * Run one solver call, timing it and counting its work. The metrics are
+     * left on the board and added to the shared statistics, whether the call
+     * returns or throws.
+     *
+     * @param operation The kind of call.
+     * @param call The call, given the metrics to count its work in.
+     * @return Returns what the call returned.
+     */
+    private <T> T measure(SolverStatistics.Operation operation, Function<SolverMetrics, T> call) {
+        SolverMetrics metrics = new SolverMetrics();
+        long start = System.nanoTime();
         try {
-            final Future f = service.submit(() -> {
-                clone = this.original.cloneBoard();
-                while (true) {
-                    if (clone.solveSudoku()) break;
-                }
-            });
-            f.get(1000, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            original.reset(original.size());
-            generateBoard();
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
+            return call.apply(metrics);
         } finally {
-            service.shutdown();
+            metrics.setElapsedNanos(System.nanoTime() - start);
+            original.setMetrics(metrics);
+            SolverStatistics.shared().record(operation, metrics);
         }
     }
 
-    boolean isSolvable() {
-        ExecutorService service = Executors.newSingleThreadExecutor();
+    /**
+     * Solves a clone of the board on the shared executor without changing the board.
+     * The search is cancelled as soon as it runs out of budget, so no thread is
+     * left running after a timeout. A board found in the {@link SolutionCache}
+     * is answered without a search, and the outcome of a finished search is
+     * added to it. A board up to 9x9 without a selected engine is searched by
+     * the {@link SolverEngine#PORTFOLIO}, so no single heuristic can stall the
+     * check; larger boards keep their default engine, as cell-order
+     * backtracking cannot finish them and would only hold a thread.
+     *
+     * @param maxNodes The number of search nodes after which the search stops.
+     * @param timeoutMillis The time after which the search stops, or 0 for no limit.
+     * @return Returns whether the board is solvable, or TIMED_OUT.
+     */
+    Result check(long maxNodes, long timeoutMillis) {
+        return measure(SolverStatistics.Operation.CHECK, metrics -> {
+            SolutionCache.Entry entry = SolutionCache.shared().get(original);
+            if (entry != null) {
+                return entry.solvable() ? Result.SOLVED : Result.UNSOLVABLE;
+            }
+            Board clone = original.cloneBoard();
+            if (!original.hasEngine() && original.size() <= 9) {
+                clone.setEngine(SolverEngine.PORTFOLIO);
+            }
+            SearchContext context = new SearchContext(metrics, maxNodes, timeoutMillis);
+            Future<Result> f = EXECUTOR.submit(() -> solve(clone, context));
+            try {
+                Result result = timeoutMillis > 0 ? f.get(timeoutMillis, TimeUnit.MILLISECONDS) : f.get();
+                if (result == Result.TIMED_OUT) {
+                    metrics.budgetStop();
+                } else {
+                    SolutionCache.shared().put(original.hash(), original.getConstraints(), original.numbers(),
+                            result == Result.SOLVED ? clone.numbers() : null);
+                }
+                return result;
+            } catch (final TimeoutException e) {
+                metrics.budgetStop();
+                return Result.TIMED_OUT;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.TIMED_OUT;
+            } catch (final ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                context.cancel();
+                f.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Solves the board on the calling thread within the given budget. The board is
+     * only changed if a solution is found.
+     *
+     * @param maxNodes The number of search nodes after which the search stops.
+     * @param timeoutMillis The time after which the search stops, or 0 for no limit.
+     * @return Returns whether the board was solved, or TIMED_OUT.
+     */
+    Result solve(long maxNodes, long timeoutMillis) {
+        return measure(SolverStatistics.Operation.SOLVE, metrics -> {
+            Board clone = original.cloneBoard();
+            Result result = solve(clone, new SearchContext(metrics, maxNodes, timeoutMillis));
+            if (result == Result.TIMED_OUT) {
+                metrics.budgetStop();
+            } else if (result == Result.SOLVED) {
+                fill(clone.numbers());
+            }
+            return result;
+        });
+    }
+
+    private static Result solve(Board board, SearchContext context) {
         try {
-            final Future<Boolean> f = service.submit(() -> {
-                this.clone = this.original.cloneBoard();
-                return clone.solveSudoku();
-            });
-            f.get(1000, TimeUnit.MILLISECONDS);
-        } catch (final TimeoutException e) {
-            return false;
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
+            return board.getEngine().solve(board, context) ? Result.SOLVED : Result.UNSOLVABLE;
+        } catch (final CancellationException e) {
+            return Result.TIMED_OUT;
         } finally {
-            service.shutdown();
+            context.finish();
         }
-        return true;
     }
 
+    int countSolutions(int limit) {
+        return measure(SolverStatistics.Operation.COUNT, metrics -> {
+            SearchContext context = new SearchContext(metrics, Long.MAX_VALUE, 0);
+            try {
+                return original.getEngine().countSolutions(original, limit, context);
+            } finally {
+                context.finish();
+            }
+        });
+    }
+
+    /**
+     * Solves the board on the calling thread. A board found in the {@link SolutionCache}
+     * gets the remembered solution without a search; otherwise the outcome is added to it.
+     *
+     * @return Returns whether the board was solved; if not, it is left as it was.
+     */
     boolean solveSudoku() {
-        for (int row = 0; row < original.size(); row++) {
-            for (int col = 0; col < original.size(); col++) {
-                if (original.getElement(row, col) == 0 && original.isMutable(row,col)) {
-                    for (int number = 1; number <= original.size(); number++) {
-                        if (original.ruleChecker(row, col, number)) {
-                            original.setElement(row, col, number);
-                            if (solveSudoku()) {
-                                return true;
-                            } else {
-                                original.deleteElement(row, col);
-                            }
-                        }
-                    }
-                    return false;
+        return measure(SolverStatistics.Operation.SOLVE, metrics -> {
+            SolutionCache.Entry entry = SolutionCache.shared().get(original);
+            if (entry != null) {
+                if (entry.solvable()) {
+                    fill(entry.solution());
                 }
+                return entry.solvable();
+            }
+            long hash = original.hash();
+            byte[] numbers = original.numbers();
+            SearchContext context = new SearchContext(metrics, Long.MAX_VALUE, 0);
+            boolean solved;
+            try {
+                solved = original.getEngine().solve(original, context);
+            } finally {
+                context.finish();
+            }
+            SolutionCache.shared().put(hash, original.getConstraints(), numbers, solved ? original.numbers() : null);
+            return solved;
+        });
+    }
+
+    /**
+     * Write the numbers of a solution into the empty squares of the board.
+     *
+     * @param solution Numbers in row-major order.
+     */
+    private void fill(byte[] solution) {
+        int size = original.size();
+        for (int cell = 0; cell < solution.length; cell++) {
+            if (original.getElement(cell / size, cell % size) == 0) {
+                original.setElement(cell / size, cell % size, solution[cell]);
             }
         }
-        return true;
     }
 }
@@ -0,0 +1,74 @@
+package code.Sudoku;
+
+/**
+ * A strategy for filling the empty squares of a {@link Board}.
+ * Board.solveSudoku and Board.isSolvable dispatch to the engine
+ * selected on the board.
+ *
+ * @see Board#setEngine(SolverEngine)
+ */
+interface SolverEngine {
+
+    /** Cell-order backtracking over ruleChecker. */
+    SolverEngine BACKTRACKING = new BacktrackingEngine();
+
+    /** Exact-cover search using Dancing Links. */
+    SolverEngine DANCING_LINKS = new DancingLinksEngine();
+
+    /** Naked and hidden singles, branching on the most constrained square. */
+    SolverEngine PROPAGATION = new PropagationEngine();
+
+    /** Fork/join search over the top levels of the tree, propagation below. */
+    SolverEngine PARALLEL = new ParallelEngine(PROPAGATION, 2);
+
+    /** Backtracking, propagation, Dancing Links and two random-restart searches racing each other. */
+    SolverEngine PORTFOLIO = new PortfolioEngine(BACKTRACKING, PROPAGATION, DANCING_LINKS,
+            new PortfolioEngine.RandomRestarts(1), new PortfolioEngine.RandomRestarts(2));
+
+    /**
+     * Returns the engine used for boards of the given size unless another one is selected.
+     * Boards larger than 9x9 are searched in parallel.
+     *
+     * @param size The size of the board.
+     * @return The default solving strategy.
+     */
+    static SolverEngine defaultFor(int size) {
+        return size > 9 ? PARALLEL : PROPAGATION;
+    }
+
+    /**
+     * Fill every empty square of the given board with a solution.
+     * If there is no solution the board is left as it was.
+     *
+     * @param board The board to be solved in place.
+     * @return Returns whether a solution was found.
+     */
+    default boolean solve(Board board) {
+        return solve(board, new SearchContext());
+    }
+
+    /**
+     * Fill every empty square of the given board with a solution, checking
+     * the context for cancellation at every node. If there is no solution
+     * the board is left as it was; if the search is cancelled the board may
+     * be left partly filled.
+     *
+     * @param board The board to be solved in place.
+     * @param context The run the search belongs to.
+     * @return Returns whether a solution was found.
+     * @throws java.util.concurrent.CancellationException if the run was cancelled.
+     */
+    boolean solve(Board board, SearchContext context);
+
+    /**
+     * Count the solutions of the given board, stopping as soon as limit of them
+     * have been found. The board is not modified.
+     *
+     * @param board The board whose solutions are counted.
+     * @param limit The number of solutions after which counting stops.
+     * @param context The run the search belongs to.
+     * @return Returns the number of solutions found, at most limit.
+     * @throws java.util.concurrent.CancellationException if the run was cancelled.
+     */
+    int countSolutions(Board board, int limit, SearchContext context);
+}
@@ -0,0 +1,120 @@
+package code.Sudoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of one solver call: search nodes, backtracks, rule checks,
+ * squares filled by propagation, generator retries, searches stopped by
+ * their budget, and the time taken. The search contexts of the call add
+ * their counts in batches, so parallel searches can share one object.
+ *
+ * @see Board#getMetrics()
+ * @see SolverStatistics
+ */
+class SolverMetrics {
+
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong backtracks = new AtomicLong();
+    private final AtomicLong ruleChecks = new AtomicLong();
+    private final AtomicLong propagations = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetStops = new AtomicLong();
+    private volatile long elapsedNanos;
+
+    /**
+     * Add the counts of a search.
+     */
+    void add(long nodes, long backtracks, long ruleChecks, long propagations) {
+        this.nodes.addAndGet(nodes);
+        this.backtracks.addAndGet(backtracks);
+        this.ruleChecks.addAndGet(ruleChecks);
+        this.propagations.addAndGet(propagations);
+    }
+
+    /**
+     * Count a grid or puzzle the generator threw away and built again.
+     */
+    void retry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Count a search that ran out of its node or time budget.
+     */
+    void budgetStop() {
+        budgetStops.incrementAndGet();
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of search nodes visited.
+     *
+     * @return The number of nodes.
+     */
+    long nodes() {
+        return nodes.get();
+    }
+
+    /**
+     * Returns the number of placements that were undone because nothing fit below them.
+     *
+     * @return The number of backtracks.
+     */
+    long backtracks() {
+        return backtracks.get();
+    }
+
+    /**
+     * Returns the number of numbers tried in a square.
+     *
+     * @return The number of rule checks.
+     */
+    long ruleChecks() {
+        return ruleChecks.get();
+    }
+
+    /**
+     * Returns the number of squares filled by naked and hidden singles.
+     *
+     * @return The number of propagated placements.
+     */
+    long propagations() {
+        return propagations.get();
+    }
+
+    /**
+     * Returns the number of grids and puzzles the generator built again.
+     *
+     * @return The number of retries.
+     */
+    long retries() {
+        return retries.get();
+    }
+
+    /**
+     * Returns the number of searches stopped by their budget, e.g. uniqueness checks while generating.
+     *
+     * @return The number of budget stops.
+     */
+    long budgetStops() {
+        return budgetStops.get();
+    }
+
+    /**
+     * Returns the wall time of the call.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.3f ms, %d nodes, %d backtracks, %d rule checks, %d propagations, %d retries, %d budget stops",
+                elapsedNanos / 1e6, nodes(), backtracks(), ruleChecks(), propagations(), retries(), budgetStops());
+    }
+}
@@ -0,0 +1,143 @@
+package code.Sudoku;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Totals of the solver calls made so far, with log2 histograms of their
+ * time and search nodes, kept per kind of call. Every Board call that goes
+ * through {@link Solver} is recorded in the shared instance.
+ */
+class SolverStatistics {
+
+    /** Kinds of solver calls. */
+    enum Operation { SOLVE, CHECK, COUNT, GENERATE }
+
+    /** Histogram buckets; bucket b counts values v with 2^(b-1) <= v < 2^b, bucket 0 counts zeros. */
+    private static final int BUCKETS = 64;
+
+    /** Counters per operation: calls, total nanos, total nodes, total retries, total budget stops. */
+    private static final int CALLS = 0, NANOS = 1, NODES = 2, RETRIES = 3, BUDGET_STOPS = 4, TOTALS = 5;
+
+    private static final SolverStatistics SHARED = new SolverStatistics();
+
+    private final AtomicLongArray totals = new AtomicLongArray(Operation.values().length * TOTALS);
+    private final AtomicLongArray nanos = new AtomicLongArray(Operation.values().length * BUCKETS);
+    private final AtomicLongArray nodes = new AtomicLongArray(Operation.values().length * BUCKETS);
+
+    /**
+     * Returns the statistics of every solver call of the game.
+     *
+     * @return The shared statistics.
+     */
+    static SolverStatistics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Add the metrics of one call.
+     *
+     * @param operation The kind of call.
+     * @param metrics Its metrics.
+     */
+    void record(Operation operation, SolverMetrics metrics) {
+        int base = operation.ordinal() * TOTALS;
+        totals.incrementAndGet(base + CALLS);
+        totals.addAndGet(base + NANOS, metrics.elapsedNanos());
+        totals.addAndGet(base + NODES, metrics.nodes());
+        totals.addAndGet(base + RETRIES, metrics.retries());
+        totals.addAndGet(base + BUDGET_STOPS, metrics.budgetStops());
+        nanos.incrementAndGet(operation.ordinal() * BUCKETS + bucket(metrics.elapsedNanos()));
+        nodes.incrementAndGet(operation.ordinal() * BUCKETS + bucket(metrics.nodes()));
+    }
+
+    /**
+     * Returns the number of calls recorded.
+     *
+     * @param operation The kind of call.
+     * @return The number of calls.
+     */
+    long calls(Operation operation) {
+        return totals.get(operation.ordinal() * TOTALS + CALLS);
+    }
+
+    /**
+     * Returns the mean time of the calls recorded.
+     *
+     * @param operation The kind of call.
+     * @return The mean time in nanoseconds, or 0 without calls.
+     */
+    long meanNanos(Operation operation) {
+        long calls = calls(operation);
+        return calls == 0 ? 0 : totals.get(operation.ordinal() * TOTALS + NANOS) / calls;
+    }
+
+    /**
+     * Returns an upper bound of the time below which the given fraction of the calls finished.
+     *
+     * @param operation The kind of call.
+     * @param fraction A fraction between 0 and 1, e.g. 0.99.
+     * @return The bound in nanoseconds: the top of the histogram bucket holding the percentile.
+     */
+    long nanosPercentile(Operation operation, double fraction) {
+        return percentile(nanos, operation, fraction);
+    }
+
+    /**
+     * Returns an upper bound of the search nodes below which the given fraction of the calls finished.
+     *
+     * @param operation The kind of call.
+     * @param fraction A fraction between 0 and 1, e.g. 0.99.
+     * @return The bound: the top of the histogram bucket holding the percentile.
+     */
+    long nodesPercentile(Operation operation, double fraction) {
+        return percentile(nodes, operation, fraction);
+    }
+
+    /**
+     * Returns the histogram of call times.
+     *
+     * @param operation The kind of call.
+     * @return Counts per bucket; bucket b holds times from 2^(b-1) to 2^b - 1 nanoseconds.
+     */
+    long[] nanosHistogram(Operation operation) {
+        long[] counts = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = nanos.get(operation.ordinal() * BUCKETS + b);
+        }
+        return counts;
+    }
+
+    private long percentile(AtomicLongArray histogram, Operation operation, double fraction) {
+        long calls = calls(operation);
+        long wanted = (long) Math.ceil(fraction * calls), seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram.get(operation.ordinal() * BUCKETS + b);
+            if (seen >= wanted && seen > 0) {
+                return b == 0 ? 0 : b == BUCKETS - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            long calls = calls(operation);
+            if (calls == 0) {
+                continue;
+            }
+            int base = operation.ordinal() * TOTALS;
+            builder.append(String.format("%s: %d calls, mean %.3f ms, p50 < %.3f ms, p99 < %.3f ms, "
+                            + "p99 nodes < %d, %d retries, %d budget stops%n",
+                    operation, calls, meanNanos(operation) / 1e6,
+                    nanosPercentile(operation, 0.5) / 1e6, nanosPercentile(operation, 0.99) / 1e6,
+                    nodesPercentile(operation, 0.99), totals.get(base + RETRIES), totals.get(base + BUDGET_STOPS)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,535 @@
+package code.Sudoku;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+/**
+ * Test the solving engines behind {@link Solver} on a few known puzzles.
+ */
+public class SolverTest {
+
+    private static final String EASY =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    private static final String HARD =
+            "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+    /** Needs an X-Wing on the number 7 after the singles run out. */
+    private static final String X_WING =
+            "1.....569492.561.8.561.924...964.8.1.64.1....218.356.4.4.5...169.5.614.2621.....5";
+    private static final SolverEngine[] ENGINES = {SolverEngine.BACKTRACKING,
+            SolverEngine.DANCING_LINKS, SolverEngine.PROPAGATION, SolverEngine.PARALLEL};
+    /** No number fits the last square of the first row. */
+    private static final String UNSOLVABLE =
+            "12345678.........9...............................................................";
+
+    @Test
+    public void testBacktrackingEasy() {
+        checkSolved(EASY, SolverEngine.BACKTRACKING);
+    }
+
+    @Test
+    public void testDancingLinksEasy() {
+        checkSolved(EASY, SolverEngine.DANCING_LINKS);
+    }
+
+    @Test
+    public void testDancingLinksHard() {
+        checkSolved(HARD, SolverEngine.DANCING_LINKS);
+    }
+
+    @Test
+    public void testPropagationEasy() {
+        checkSolved(EASY, SolverEngine.PROPAGATION);
+    }
+
+    @Test
+    public void testPropagationHard() {
+        checkSolved(HARD, SolverEngine.PROPAGATION);
+    }
+
+    @Test
+    public void testParallelHard() {
+        checkSolved(HARD, SolverEngine.PARALLEL);
+    }
+
+    @Test
+    public void testParallelSolved() {
+        Board board = load(EASY, SolverEngine.PARALLEL);
+        assertTrue(board.solveSudoku());
+        assertTrue(board.solveSudoku());
+    }
+
+    @Test
+    public void testUnsolvable() {
+        checkUnsolvable(UNSOLVABLE, SolverEngine.BACKTRACKING);
+        checkUnsolvable(UNSOLVABLE, SolverEngine.DANCING_LINKS);
+        checkUnsolvable(UNSOLVABLE, SolverEngine.PROPAGATION);
+        checkUnsolvable(UNSOLVABLE, SolverEngine.PARALLEL);
+    }
+
+    @Test
+    public void testEnginesAgree() {
+        Board first = load(EASY, SolverEngine.BACKTRACKING);
+        Board second = load(EASY, SolverEngine.DANCING_LINKS);
+        Board third = load(EASY, SolverEngine.PROPAGATION);
+        assertTrue(first.solveSudoku());
+        assertTrue(second.solveSudoku());
+        assertTrue(third.solveSudoku());
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                assertEquals(first.getElement(i, j), second.getElement(i, j));
+                assertEquals(first.getElement(i, j), third.getElement(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testCountUnique() {
+        checkCount(EASY, 2, 1);
+        checkCount(HARD, 2, 1);
+        checkCount(UNSOLVABLE, 2, 0);
+    }
+
+    @Test
+    public void testCountLimit() {
+        /*an empty 4x4 board has 288 solutions*/
+        for (SolverEngine engine : ENGINES) {
+            Board board = new Board(4);
+            board.setEngine(engine);
+            assertEquals(288, board.countSolutions(1000));
+            assertEquals(5, board.countSolutions(5));
+            assertEquals(0, board.getElement(0, 0));
+        }
+    }
+
+    @Test
+    public void testCountAmbiguous() {
+        /*the EASY puzzle without its first two givens has more than one solution*/
+        checkCount(".." + EASY.substring(2), 2, 2);
+    }
+
+    @Test
+    public void testIsSolvable() {
+        assertTrue(load(HARD, SolverEngine.PROPAGATION).isSolvable());
+        assertFalse(load(UNSOLVABLE, SolverEngine.PROPAGATION).isSolvable());
+    }
+
+    @Test
+    public void testNodeBudget() {
+        /*cell-order backtracking needs far more than 1000 nodes on HARD*/
+        Board board = load(HARD, SolverEngine.BACKTRACKING);
+        assertEquals(Solver.Result.TIMED_OUT, board.solveWithin(1000, 0));
+        assertEquals(0, board.getElement(0, 1));
+        board.setEngine(SolverEngine.DANCING_LINKS);
+        assertEquals(Solver.Result.SOLVED, board.solveWithin(1000000, 0));
+        assertTrue(board.getElement(0, 1) != 0);
+    }
+
+    @Test
+    public void testMetrics() {
+        /*other tests may have solved HARD already*/
+        SolutionCache.shared().clear();
+        SolverStatistics statistics = SolverStatistics.shared();
+        long solves = statistics.calls(SolverStatistics.Operation.SOLVE);
+        Board board = load(HARD, SolverEngine.BACKTRACKING);
+        assertNull(board.getMetrics());
+        assertEquals(Solver.Result.TIMED_OUT, board.solveWithin(1000, 0));
+        SolverMetrics metrics = board.getMetrics();
+        assertTrue(metrics.nodes() >= 1000);
+        assertTrue(metrics.backtracks() > 0);
+        assertTrue(metrics.ruleChecks() >= metrics.backtracks());
+        assertEquals(1, metrics.budgetStops());
+        assertTrue(metrics.elapsedNanos() > 0);
+
+        board.setEngine(SolverEngine.PROPAGATION);
+        assertTrue(board.solveSudoku());
+        assertTrue(board.getMetrics().propagations() > 0);
+        assertEquals(0, board.getMetrics().budgetStops());
+        assertEquals(solves + 2, statistics.calls(SolverStatistics.Operation.SOLVE));
+        assertTrue(statistics.nanosPercentile(SolverStatistics.Operation.SOLVE, 1) > 0);
+
+        Board generated = new Board(9);
+        generated.generateBoard();
+        assertTrue(generated.getMetrics().nodes() > 0);
+    }
+
+    @Test
+    public void testTimeBudget() {
+        Board board = load(HARD, SolverEngine.BACKTRACKING);
+        long start = System.nanoTime();
+        assertEquals(Solver.Result.TIMED_OUT, board.solveWithin(Long.MAX_VALUE, 50));
+        assertTrue(System.nanoTime() - start < 500000000L);
+    }
+
+    @Test
+    public void testCancel() {
+        SearchContext context = new SearchContext();
+        context.cancel();
+        try {
+            SolverEngine.PROPAGATION.solve(load(HARD, SolverEngine.PROPAGATION), context);
+            fail("expected a CancellationException");
+        } catch (CancellationException e) {
+            assertTrue(context.isCancelled());
+            assertFalse(context.isExhausted());
+        }
+    }
+
+    @Test
+    public void testGenerateUnique() {
+        for (int size : new int[] {4, 9, 16}) {
+            Board board = new Board(size);
+            new Generator(new Random(size)).generate(board, Generator.defaultClues(size));
+            assertEquals(1, board.countSolutions(2));
+            int givens = 0;
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (board.getElement(i, j) != 0) {
+                        givens++;
+                        assertFalse(board.isMutable(i, j));
+                        assertTrue(board.isValid(i, j));
+                    }
+                }
+            }
+            assertTrue(givens >= Generator.defaultClues(size));
+            assertTrue(board.solveSudoku());
+            assertTrue(board.isSolved());
+        }
+    }
+
+    @Test
+    public void testGenerateSmallGrids() {
+        for (int seed = 0; seed < 50; seed++) {
+            Board board = new Board(4);
+            new Generator(new Random(seed)).generate(board, Generator.defaultClues(4));
+            assertEquals(1, board.countSolutions(2));
+        }
+    }
+
+    @Test
+    public void testGenerateVariant() {
+        ConstraintSet diagonal = ConstraintSet.classic(9).withDiagonals();
+        Board board = new Board(9);
+        board.setConstraints(diagonal);
+        new Generator(new Random(3)).generate(board, Generator.defaultClues(9));
+        assertSame(diagonal, board.getConstraints());
+        assertEquals(1, board.countSolutions(2));
+        assertTrue(board.solveSudoku());
+        assertTrue(board.isSolved());
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < i; j++) {
+                assertNotEquals(board.getElement(i, i), board.getElement(j, j));
+                assertNotEquals(board.getElement(i, 8 - i), board.getElement(j, 8 - j));
+            }
+        }
+    }
+
+    @Test
+    public void testGenerateDifficulty() {
+        DifficultyRater rater = new DifficultyRater();
+        for (Difficulty difficulty : new Difficulty[] {Difficulty.EASY, Difficulty.MEDIUM, Difficulty.EXPERT}) {
+            Board board = new Board(9);
+            new Generator(new Random(1)).generate(board, difficulty);
+            assertEquals(1, board.countSolutions(2));
+            assertEquals(difficulty, rater.rate(board).difficulty());
+        }
+    }
+
+    @Test
+    public void testRateTechniques() {
+        DifficultyRater rater = new DifficultyRater();
+        DifficultyRater.Rating easy = rater.rate(load(EASY, SolverEngine.PROPAGATION));
+        assertEquals(Difficulty.EASY, easy.difficulty());
+        assertTrue(easy.solved());
+        DifficultyRater.Rating xWing = rater.rate(load(X_WING, SolverEngine.PROPAGATION));
+        assertEquals(Technique.X_WING, xWing.hardest());
+        assertEquals(Difficulty.HARD, xWing.difficulty());
+        assertTrue(xWing.score() > easy.score());
+        assertFalse(rater.rate(load(UNSOLVABLE, SolverEngine.PROPAGATION)).solved());
+    }
+
+    @Test
+    public void testCanonicalForm() {
+        Board board = load(EASY, SolverEngine.PROPAGATION);
+        /*transposed, first two rows swapped, first and last stacks swapped, numbers reversed*/
+        Board copy = new Board(9);
+        int[] rows = {1, 0, 2, 3, 4, 5, 6, 7, 8};
+        int[] cols = {6, 7, 8, 3, 4, 5, 0, 1, 2};
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                int num = board.getElement(rows[i], cols[j]);
+                if (num != 0) {
+                    copy.setElement(j, i, 10 - num);
+                }
+            }
+        }
+        Canonicalizer canonicalizer = new Canonicalizer();
+        assertArrayEquals(canonicalizer.canonicalForm(board), canonicalizer.canonicalForm(copy));
+        assertEquals(canonicalizer.fingerprint(board), canonicalizer.fingerprint(copy));
+        assertNotEquals(canonicalizer.fingerprint(board),
+                canonicalizer.fingerprint(load(HARD, SolverEngine.PROPAGATION)));
+    }
+
+    @Test
+    public void testGenerateSeeded() {
+        Board first = new Board(9);
+        Board second = new Board(9);
+        new Generator(new Random(42)).generate(first, 30);
+        new Generator(new Random(42)).generate(second, 30);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                assertEquals(first.getElement(i, j), second.getElement(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testHintsSolveEasy() {
+        Board board = load(EASY, SolverEngine.PROPAGATION);
+        Board solved = board.cloneBoard();
+        assertTrue(solved.solveSudoku());
+        HintEngine hints = new HintEngine();
+        for (HintEngine.Hint hint = hints.next(board); hint != null; hint = hints.next(board)) {
+            assertEquals(solved.getElement(hint.row(), hint.col()), hint.number());
+            board.setElement(hint.row(), hint.col(), hint.number());
+        }
+        assertTrue(board.isSolved());
+    }
+
+    @Test
+    public void testHintHiddenSingle() {
+        Board board = new Board(9);
+        board.setElement(0, 3, 1);
+        board.setElement(1, 6, 1);
+        board.setElement(3, 1, 1);
+        board.setElement(6, 2, 1);
+        HintEngine.Hint hint = new HintEngine().next(board);
+        assertEquals(Technique.HIDDEN_SINGLE, hint.technique());
+        assertEquals(2, hint.row());
+        assertEquals(0, hint.col());
+        assertEquals(1, hint.number());
+    }
+
+    @Test
+    public void testSolutionCache() {
+        SolutionCache cache = SolutionCache.shared();
+        cache.clear();
+        Board board = load(HARD, SolverEngine.PROPAGATION);
+        assertTrue(board.isSolvable());
+        long hits = cache.hits();
+        /*backtracking takes seconds on HARD, the cache answers without a search*/
+        board.setEngine(SolverEngine.BACKTRACKING);
+        assertTrue(board.solveSudoku());
+        assertEquals(hits + 1, cache.hits());
+        assertEquals(0, board.getMetrics().nodes());
+        assertTrue(board.isSolved());
+
+        Board unsolvable = load(UNSOLVABLE, SolverEngine.PROPAGATION);
+        assertFalse(unsolvable.isSolvable());
+        assertFalse(unsolvable.solveSudoku());
+        assertEquals(hits + 2, cache.hits());
+
+        /*an entry for other numbers with the same hash is not used*/
+        Board empty = new Board(9);
+        cache.put(empty.hash(), empty.getConstraints(), new byte[81 - 1], null);
+        assertTrue(empty.isSolvable());
+    }
+
+    @Test
+    public void testGameSolution() throws InterruptedException {
+        Board board = load(HARD, SolverEngine.PROPAGATION);
+        GameSolution solution = new GameSolution(board);
+        solution.await();
+        assertTrue(solution.isReady());
+        Board solved = board.cloneBoard();
+        assertTrue(solved.solveSudoku());
+        assertEquals(solved.getElement(0, 1), solution.numberAt(0, 1));
+        assertFalse(solution.isWrong(0, 1, solved.getElement(0, 1)));
+
+        /*a wrong number that breaks no rule yet*/
+        int wrong = solved.getElement(0, 1) % 9 + 1;
+        while (!board.ruleChecker(0, 1, wrong)) {
+            wrong = wrong % 9 + 1;
+        }
+        assertTrue(solution.isWrong(0, 1, wrong));
+        board.setElement(0, 1, wrong);
+        assertFalse(solution.isSolvable(board));
+        assertFalse(solution.solve(board));
+        board.setElement(0, 1, solved.getElement(0, 1));
+        assertTrue(solution.isSolvable(board));
+        assertTrue(solution.solve(board));
+        assertTrue(board.isSolved());
+
+        Board unsolvable = load(UNSOLVABLE, SolverEngine.PROPAGATION);
+        GameSolution none = new GameSolution(unsolvable);
+        none.await();
+        assertEquals(0, none.numberAt(0, 0));
+        assertFalse(none.isSolvable(unsolvable));
+
+        /*with several solutions one is kept, but no number is known to be wrong*/
+        Board empty = new Board(9);
+        GameSolution many = new GameSolution(empty);
+        many.await();
+        assertTrue(many.isReady());
+        assertTrue(many.numberAt(0, 0) != 0);
+        assertFalse(many.isWrong(0, 0, many.numberAt(0, 0) % 9 + 1));
+
+        /*a cancelled solve may or may not have finished; either way the board gets an answer*/
+        Board fresh = load(HARD, SolverEngine.PROPAGATION);
+        GameSolution cancelled = new GameSolution(fresh);
+        cancelled.cancel();
+        cancelled.await();
+        assertEquals(cancelled.isReady(), cancelled.numberAt(0, 1) != 0);
+        assertTrue(cancelled.isSolvable(fresh));
+    }
+
+    @Test
+    public void testPortfolio() {
+        checkSolved(HARD, SolverEngine.PORTFOLIO);
+        checkSolved(HARD, new PortfolioEngine.RandomRestarts(7));
+        assertEquals(1, SolverEngine.PORTFOLIO.countSolutions(load(HARD, SolverEngine.PORTFOLIO), 2, new SearchContext()));
+        Board unsolvable = load(UNSOLVABLE, SolverEngine.PORTFOLIO);
+        assertFalse(SolverEngine.PORTFOLIO.solve(unsolvable));
+        assertEquals(0, unsolvable.getElement(0, 8));
+
+        /*the portfolio shares the caller's budget*/
+        SearchContext context = new SearchContext(10, 0);
+        try {
+            SolverEngine.PORTFOLIO.solve(load(HARD, SolverEngine.PORTFOLIO), context);
+            fail("expected a CancellationException");
+        } catch (CancellationException e) {
+            assertTrue(context.isExhausted());
+        }
+    }
+
+    @Test
+    public void testVariants() {
+        Board grid = load(EASY, SolverEngine.PROPAGATION);
+        assertTrue(SolverEngine.PROPAGATION.solve(grid));
+        /*cages of two squares along the rows, the last column alone, with the sums of the grid*/
+        int[][] cages = new int[45][];
+        int[] sums = new int[45];
+        int[] parity = new int[81];
+        for (int row = 0, c = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col += 2, c++) {
+                cages[c] = col < 8 ? new int[]{row * 9 + col, row * 9 + col + 1} : new int[]{row * 9 + col};
+                for (int cell : cages[c]) {
+                    sums[c] += grid.getElement(cell / 9, cell % 9);
+                }
+            }
+        }
+        for (int cell = 0; cell < 81; cell += 2) {
+            parity[cell] = grid.getElement(cell / 9, cell % 9) % 2 == 1 ? ConstraintSet.ODD : ConstraintSet.EVEN;
+        }
+        ConstraintSet diagonal = ConstraintSet.classic(9).withDiagonals();
+        ConstraintSet killer = ConstraintSet.classic(9).withCages(cages, sums).withParity(parity);
+        for (SolverEngine engine : new SolverEngine[]{SolverEngine.BACKTRACKING, SolverEngine.PROPAGATION,
+                SolverEngine.DANCING_LINKS, SolverEngine.PORTFOLIO}) {
+            for (ConstraintSet rules : new ConstraintSet[]{diagonal, killer}) {
+                Board board = new Board(9);
+                board.setEngine(engine);
+                board.setConstraints(rules);
+                assertTrue(rules + " " + engine, engine.solve(board));
+                /*valid squares obey every rule of the set, including cage sums and parity*/
+                assertTrue(board.isSolved());
+                for (int i = 0; i < 9 && rules == diagonal; i++) {
+                    for (int j = 0; j < i; j++) {
+                        assertNotEquals(board.getElement(i, i), board.getElement(j, j));
+                        assertNotEquals(board.getElement(i, 8 - i), board.getElement(j, 8 - j));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchValidator() {
+        Board solved = load(EASY, SolverEngine.PROPAGATION);
+        assertTrue(solved.solveSudoku());
+        ByteBuffer boards = ByteBuffer.allocate(20 * 81);
+        for (int i = 0; i < 20; i++) {
+            solved.pack(boards);
+        }
+        /*board 3 gets a second copy of the number at (0, 1); board 17 an empty square*/
+        boards.put(3 * 81, (byte) solved.getElement(0, 1));
+        boards.put(17 * 81 + 80, (byte) 0);
+        boards.flip();
+        for (BatchValidator validator : new BatchValidator[]{new BatchValidator(), BatchValidator.create()}) {
+            BatchValidator.Report[] reports = validator.validate(9, boards, 20);
+            assertEquals(0, boards.position());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(i != 3 && i != 17, reports[i].solved());
+            }
+            /*the new copy clashes with (0, 1) in its row and sub-grid and with the old one in column 0*/
+            int[] conflicts = reports[3].conflicts();
+            assertEquals(3, conflicts.length);
+            assertEquals(0, conflicts[0]);
+            assertEquals(1, conflicts[1]);
+            assertEquals(solved.getElement(0, 1), solved.getElement(conflicts[2] / 9, 0));
+            assertArrayEquals(new int[]{80}, reports[17].conflicts());
+        }
+    }
+
+    /** Count the solutions of the given puzzle with every engine. */
+    private void checkCount(String puzzle, int limit, int expected) {
+        for (SolverEngine engine : ENGINES) {
+            assertEquals(expected, load(puzzle, engine).countSolutions(limit));
+        }
+    }
+
+    /** Solve the given puzzle and check every square ends up filled and valid. */
+    private void checkSolved(String puzzle, SolverEngine engine) {
+        Board board = load(puzzle, engine);
+        /*the engine itself, as solveSudoku may answer from the solution cache*/
+        assertTrue(engine.solve(board));
+        int[] values = new int[81];
+        for (int i = 0; i < 81; i++) {
+            values[i] = board.getElement(i / 9, i % 9);
+            if (puzzle.charAt(i) != '.') {
+                assertEquals(puzzle.charAt(i) - '0', values[i]);
+            }
+        }
+        checkUniqueUnits(values);
+    }
+
+    /** Solve the given puzzle and check the board is left untouched. */
+    private void checkUnsolvable(String puzzle, SolverEngine engine) {
+        Board board = load(puzzle, engine);
+        assertFalse(board.solveSudoku());
+        for (int i = 0; i < 81; i++) {
+            char c = puzzle.charAt(i);
+            assertEquals(c == '.' ? 0 : c - '0', board.getElement(i / 9, i % 9));
+        }
+    }
+
+    /** Check every row, column and sub-grid holds each number once. */
+    private void checkUniqueUnits(int[] values) {
+        for (int unit = 0; unit < 9; unit++) {
+            int rows = 0, cols = 0, boxes = 0;
+            for (int i = 0; i < 9; i++) {
+                rows |= 1 << values[unit * 9 + i];
+                cols |= 1 << values[i * 9 + unit];
+                boxes |= 1 << values[(unit / 3 * 3 + i / 3) * 9 + unit % 3 * 3 + i % 3];
+            }
+            assertEquals(0x3FE, rows);
+            assertEquals(0x3FE, cols);
+            assertEquals(0x3FE, boxes);
+        }
+    }
+
+    /** Create a 9x9 board from an 81 character string, '.' being an empty square. */
+    private Board load(String puzzle, SolverEngine engine) {
+        Board board = new Board(9);
+        board.setEngine(engine);
+        for (int i = 0; i < 81; i++) {
+            char c = puzzle.charAt(i);
+            if (c != '.') {
+                board.setElement(i / 9, i % 9, c - '0');
+            }
+        }
+        return board;
+    }
+}
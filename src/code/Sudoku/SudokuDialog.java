@@ -6,6 +6,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.net.URL;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
 
 /**
@@ -20,12 +21,22 @@ public class SudokuDialog extends JFrame {
 
     /** Default dimension of the dialog. */
     private final static Dimension DEFAULT_SIZE = new Dimension(310, 450);
+    /** Width of the board in the default dimension. */
+    private final static int BOARD_WIDTH = 276;
+    /** Square size used for boards too large to fit the default dimension. */
+    private final static int LARGE_SQUARE = 26;
     private final static String IMAGE_DIR = "/image/";
     final static Color BACKGROUND = new Color(47,76,76);
 
     /** Sudoku history. */
     private HistoryNode history;
 
+    /** Solution of the current game, computed in the background when it starts. */
+    private GameSolution solution;
+
+    /** Puzzle of the last new game asked for, while it is being generated. */
+    private CompletableFuture<Board> pending;
+
     /** Special panel to display a Sudoku history. */
     private BoardPanel boardPanel;
 
@@ -92,7 +103,11 @@ public class SudokuDialog extends JFrame {
             else {
                 history.setElement(boardPanel.sy, boardPanel.sx, number);
                 boardPanel.invalid = !history.isValid(boardPanel.sy, boardPanel.sx);
-                showMessage(String.format("Inserted Number %d", number));
+                if (solution.isWrong(boardPanel.sy, boardPanel.sx, number)) {
+                    showMessage(String.format("Inserted Number %d; the board can no longer be solved", number));
+                } else {
+                    showMessage(String.format("Inserted Number %d", number));
+                }
             }
             boardPanel.setBoard(history.getBoard());
         }
@@ -139,35 +154,38 @@ public class SudokuDialog extends JFrame {
         setVisible(true);
         /*Menu Items Listeners*/
         newGame.addActionListener(e -> {
-            Object[] options = {"4x4", "9x9", "Exit"};
+            Object[] options = {"4x4", "9x9", "16x16", "25x25", "Exit"};
+            int[] sizes = {4, 9, 16, 25};
             int n = JOptionPane.showOptionDialog(null, "Select a Sudoku Size",
                     "New Game", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.INFORMATION_MESSAGE,
-                    null, options, options[2]);
-            switch (n) {
-                case JOptionPane.YES_OPTION:
-                    history.reset(4);
-                    content.remove(numberButtons);
-                    numberButtons = makeNumberButtons();
-                    content.add(numberButtons);
-                    break;
-                case JOptionPane.NO_OPTION:
-                    history.reset(9);
-                    content.remove(numberButtons);
-                    numberButtons = makeNumberButtons();
-                    content.add(numberButtons);
-                    break;
-                case JOptionPane.CANCEL_OPTION:
-                    System.exit(0);
-                    break;
+                    null, options, options[4]);
+            int size = history.size();
+            if (n == options.length - 1) {
+                System.exit(0);
             }
-            boardPanel.reset = true;
-            history.generateBoard();
-            content.revalidate();
-            repaint();
+            else if (n >= 0) {
+                size = sizes[n];
+            }
+            newGame(size);
         });
         exit.addActionListener(e -> System.exit(0));
     }
 
+    /**
+     * Returns the dimension of the dialog for a board of the given size;
+     * boards larger than 9x9 get a larger dialog so their squares stay readable.
+     *
+     * @param size Size of the board.
+     */
+    private static Dimension dialogSize(int size) {
+        int extra = Math.max(0, size * LARGE_SQUARE - BOARD_WIDTH);
+        if (extra == 0) {
+            return DEFAULT_SIZE;
+        }
+        /*the number buttons wrap onto a second row*/
+        return new Dimension(DEFAULT_SIZE.width + extra, DEFAULT_SIZE.height + extra + 40);
+    }
+
     /**
      * Configure the UI.
      */
@@ -231,17 +249,20 @@ public class SudokuDialog extends JFrame {
      */
     private JPanel makeToolBar() {
         JPanel toolBar = new JPanel();
-        JButton undo, redo, solve, can;
+        JButton undo, redo, hint, solve, can;
         undo = makeOptionButtons("undo.png", KeyEvent.VK_Z);
         redo = makeOptionButtons("redo.png", KeyEvent.VK_Y);
+        hint = makeOptionButtons("hint.png", KeyEvent.VK_H);
         solve = makeOptionButtons("solve.png", KeyEvent.VK_S);
         can = makeOptionButtons("can.png", KeyEvent.VK_C);
         undo.addActionListener(e -> undo());
         redo.addActionListener(e -> redo());
+        hint.addActionListener(e -> hint());
         solve.addActionListener(e -> solve());
         can.addActionListener(e-> isSolvable());
         toolBar.add(undo);
         toolBar.add(redo);
+        toolBar.add(hint);
         toolBar.add(solve);
         toolBar.add(can);
         toolBar.setBackground(BACKGROUND);
@@ -311,9 +332,55 @@ public class SudokuDialog extends JFrame {
      * Method used to create a HistoryNode for undo and redo.
      * */
     private void initHistory() {
-        history = new HistoryNode(new Board(4));
-        history.generateBoard();
+        history = new HistoryNode(PuzzlePool.shared().take(4));
+        solution = new GameSolution(history.getBoard());
+
+    }
 
+    /**
+     * Starts a new game with a ready puzzle from the pool, so the
+     * event thread does not wait for the generator. If none is ready the
+     * puzzle is generated in the background and the game starts once it is
+     * done, unless another new game was asked for in the meantime.
+     *
+     * @param size Size of the new board.
+     * */
+    private void newGame(int size) {
+        CompletableFuture<Board> next = PuzzlePool.shared().request(size);
+        pending = next;
+        if (next.isDone()) {
+            startGame(next.join());
+            return;
+        }
+        showMessage(String.format("Generating a %dx%d puzzle...", size, size));
+        next.thenAccept(board -> SwingUtilities.invokeLater(() -> {
+            if (pending == next) {
+                showMessage("");
+                startGame(board);
+            }
+        }));
+    }
+
+    /**
+     * Replaces the game by a new one on the given puzzle.
+     *
+     * @param board The puzzle of the new game.
+     * */
+    private void startGame(Board board) {
+        boardPanel.reset = true;
+        history = new HistoryNode(board);
+        solution.cancel();
+        solution = new GameSolution(history.getBoard());
+        boardPanel.setBoard(history.getBoard());
+        boardPanel.sx = 0;
+        boardPanel.sy = 0;
+        boardPanel.highlightSqr = false;
+        setSize(dialogSize(board.size()));
+        content.remove(numberButtons);
+        numberButtons = makeNumberButtons();
+        content.add(numberButtons);
+        content.revalidate();
+        repaint();
     }
 
     /**
@@ -340,16 +407,30 @@ public class SudokuDialog extends JFrame {
         }
     }
 
+    /**
+     * Method called when the hint button is pressed. It selects the square
+     * of the next logical placement and names the technique behind it.
+     * */
+    private void hint() {
+        HintEngine.Hint hint = new HintEngine().next(history.getBoard());
+        if (hint == null) {
+            showMessage("No hint: check the numbers or try Solve");
+            return;
+        }
+        boardClicked(hint.col(), hint.row());
+        showMessage("Hint: " + hint);
+    }
+
     /**
      * Method called when the solve button is pressed.
      * */
     private void solve() {
-        if (history.getBoard().isSolvable()) {
+        if (solution.isSolvable(history.getBoard())) {
             createHistory();
             history.setWasSolved();
             history.setBoard(history.getBoard());
             boardPanel.setBoard(history.getBoard());
-            history.getBoard().solveSudoku();
+            solution.solve(history.getBoard());
             boardPanel.repaint();
         }
         else {
@@ -362,7 +443,7 @@ public class SudokuDialog extends JFrame {
      * */
     private void isSolvable() {
         if (!history.getBoard().isSolved()) {
-            if (history.getBoard().isSolvable()) {
+            if (solution.isSolvable(history.getBoard())) {
                 JOptionPane.showMessageDialog(null, "This board CAN be solved.", "Can It Be Solved?", JOptionPane.INFORMATION_MESSAGE);
             } else {
                 JOptionPane.showMessageDialog(null, "This board CANNOT be solved.", "Can It Be Solved?", JOptionPane.INFORMATION_MESSAGE);
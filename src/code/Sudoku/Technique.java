@@ -0,0 +1,62 @@
+package code.Sudoku;
+
+/**
+ * Human solving techniques, from the easiest to the hardest. The weight is
+ * what one use of the technique adds to the score of a puzzle.
+ *
+ * @see HintEngine
+ * @see DifficultyRater
+ */
+enum Technique {
+    /** The square allows only one number. */
+    NAKED_SINGLE("naked single", 1, Difficulty.EASY),
+    /** The number fits only one square of a row, column or sub-grid. */
+    HIDDEN_SINGLE("hidden single", 2, Difficulty.EASY),
+    /** The number fits a sub-grid only along one line, so the rest of the line cannot hold it. */
+    POINTING_PAIR("pointing pair", 10, Difficulty.MEDIUM),
+    /** The number fits a line only inside one sub-grid, so the rest of the sub-grid cannot hold it. */
+    BOX_LINE("box/line reduction", 10, Difficulty.MEDIUM),
+    /** Two squares of a unit allow the same two numbers only. */
+    NAKED_PAIR("naked pair", 15, Difficulty.MEDIUM),
+    /** Two numbers fit the same two squares of a unit only. */
+    HIDDEN_PAIR("hidden pair", 20, Difficulty.MEDIUM),
+    /** Three squares of a unit allow three numbers between them. */
+    NAKED_TRIPLE("naked triple", 30, Difficulty.HARD),
+    /** Three numbers fit the same three squares of a unit only. */
+    HIDDEN_TRIPLE("hidden triple", 40, Difficulty.HARD),
+    /** The number fits two rows (or columns) in the same two columns (or rows) only. */
+    X_WING("X-Wing", 50, Difficulty.HARD);
+
+    private final String label;
+    private final int weight;
+    private final Difficulty difficulty;
+
+    Technique(String label, int weight, Difficulty difficulty) {
+        this.label = label;
+        this.weight = weight;
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Returns the score of one use of this technique.
+     *
+     * @return The weight added to the score of a puzzle.
+     */
+    int weight() {
+        return weight;
+    }
+
+    /**
+     * Returns the difficulty of a puzzle that needs this technique at most.
+     *
+     * @return The difficulty level.
+     */
+    Difficulty difficulty() {
+        return difficulty;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,101 @@
+package code.Sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link BatchValidator} deciding one board per vector lane. The squares
+ * of a group of boards are laid out square by square, so that one vector
+ * holds the same square of every board; the unit bitmasks of all the boards
+ * are then built with one shift and a few ors per square.
+ * <p>
+ * The project targets Java 8, so this class lives outside src and is built
+ * on its own with JDK 16 or later, then put on the class path:
+ * <pre>
+ *  javac --add-modules jdk.incubator.vector -cp out -d vector-out vector/code/Sudoku/VectorBatchValidator.java
+ *  java --add-modules jdk.incubator.vector -cp out:vector-out ...
+ * </pre>
+ * {@link BatchValidator#create()} only loads it when the module is present,
+ * and falls back to the scalar validator otherwise.
+ */
+class VectorBatchValidator extends BatchValidator {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int VALUE = 0x1F;
+
+    /** Square by square values of a group of boards, LANES per square. */
+    private int[] values;
+    /** Unit bitmasks of a group of boards, LANES per unit. */
+    private int[] seen;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void findSolved(ByteBuffer boards, int count, boolean[] solved) {
+        int cells = size * size, start = boards.position();
+        int groups = count / LANES;
+        for (int group = 0; group < groups; group++) {
+            int first = group * LANES;
+            for (int lane = 0; lane < LANES; lane++) {
+                int offset = start + (first + lane) * cells;
+                for (int cell = 0; cell < cells; cell++) {
+                    values[cell * LANES + lane] = boards.get(offset + cell) & VALUE;
+                }
+            }
+            VectorMask<Integer> ok = solvedLanes();
+            for (int lane = 0; lane < LANES; lane++) {
+                solved[first + lane] = ok.laneIsSet(lane);
+            }
+        }
+        for (int i = groups * LANES; i < count; i++) {
+            solved[i] = isSolved(boards, start + i * cells);
+        }
+    }
+
+    /**
+     * Returns the lanes of the current group whose board holds every number once in every unit.
+     */
+    private VectorMask<Integer> solvedLanes() {
+        Arrays.fill(seen, 0);
+        IntVector one = IntVector.broadcast(SPECIES, 1);
+        IntVector repeated = IntVector.zero(SPECIES);
+        for (int cell = 0; cell < size * size; cell++) {
+            IntVector bits = one.lanewise(VectorOperators.LSHL, IntVector.fromArray(SPECIES, values, cell * LANES));
+            repeated = repeated.or(add(rowOf[cell], bits)).or(add(colOf[cell], bits)).or(add(boxOf[cell], bits));
+        }
+        VectorMask<Integer> ok = repeated.compare(VectorOperators.EQ, 0);
+        int full = ((1 << size) - 1) << 1;
+        for (int unit = 0; unit < 3 * size; unit++) {
+            ok = ok.and(IntVector.fromArray(SPECIES, seen, unit * LANES).compare(VectorOperators.EQ, full));
+        }
+        return ok;
+    }
+
+    /**
+     * Add the bits to the masks of a unit.
+     *
+     * @return Returns the bits that were already set.
+     */
+    private IntVector add(int unit, IntVector bits) {
+        IntVector mask = IntVector.fromArray(SPECIES, seen, unit * LANES);
+        mask.or(bits).intoArray(seen, unit * LANES);
+        return mask.and(bits);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void layout(int size) {
+        super.layout(size);
+        values = new int[size * size * LANES];
+        seen = new int[3 * size * LANES];
+    }
+}